@@ -0,0 +1,205 @@
+package sayingsDatabase;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The BKTree class finds sayings whose Hawaiian words are within a small
+ * number of typos of a query. The Hawaiian words are folded the way the
+ * collation key folds them (lowercase, no ʻokina, no kahakō), so leaving out
+ * the ʻokina or the kahakō is not a typo at all, and the folded phrases are
+ * kept in a Burkhard–Keller tree under the Levenshtein distance: each child
+ * hangs off its parent by its distance from the parent. By the triangle
+ * inequality, a search within k edits only has to visit the children whose
+ * distance from a visited node is within k of the query's distance from it,
+ * so a lookup with a small k visits a small part of the tree.
+ *
+ * Like PrefixTrie, one thread may add or remove while any number of threads search:
+ * edges and the lists of sayings at a node are replaced rather than changed.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+class BKTree {
+    private static final Saying[] NO_SAYINGS = new Saying[0];
+    private static final Edges NO_EDGES = new Edges(new int[0], new BKNode[0]);
+
+    // the children of a node: distances are sorted, and children[i] is at distances[i]
+    private static class Edges {
+        final int[] distances;
+        final BKNode[] children;
+
+        Edges(int[] distances, BKNode[] children) {
+            this.distances = distances;
+            this.children = children;
+        }
+    }
+
+    // a node of the tree, for one folded phrase
+    private static class BKNode {
+        final String phrase; // the folded Hawaiian words
+        volatile Saying[] sayings = NO_SAYINGS; // sayings whose Hawaiian words fold to the phrase
+        volatile Edges edges = NO_EDGES; // children of the node
+
+        BKNode(String phrase) {
+            this.phrase = phrase;
+        }
+    }
+
+    // a saying found by a search, with its distance from the query
+    private static class Found {
+        final Saying saying;
+        final int distance;
+
+        Found(Saying saying, int distance) {
+            this.saying = saying;
+            this.distance = distance;
+        }
+    }
+
+    private volatile BKNode root; // root of the tree, or null when it is empty
+    private final Comparator<Saying> order; // alphabetical order of the sayings
+
+    // constructor that creates an empty tree returning equally close sayings in the given order
+    BKTree(Comparator<Saying> order) {
+        this.order = order;
+    }
+
+    // add a saying under its folded Hawaiian words
+    void add(Saying saying) {
+        String phrase = Saying.fold(saying.getHawaiianWords());
+        BKNode node = root;
+        if (node == null) {
+            node = new BKNode(phrase);
+            node.sayings = new Saying[] { saying };
+            root = node;
+            return;
+        }
+        int[] previous = new int[phrase.length() + 1];
+        int[] current = new int[phrase.length() + 1];
+        while (true) {
+            int d = distance(node.phrase, phrase, previous, current);
+            if (d == 0) {
+                Saying[] sayings = Arrays.copyOf(node.sayings, node.sayings.length + 1);
+                sayings[sayings.length - 1] = saying;
+                node.sayings = sayings;
+                return;
+            }
+            Edges edges = node.edges;
+            int i = Arrays.binarySearch(edges.distances, d);
+            if (i >= 0) {
+                node = edges.children[i];
+                continue;
+            }
+            // publish a copy of the edges with a new child at distance d
+            BKNode child = new BKNode(phrase);
+            child.sayings = new Saying[] { saying };
+            int at = -i - 1;
+            int n = edges.distances.length;
+            int[] distances = new int[n + 1];
+            BKNode[] children = new BKNode[n + 1];
+            System.arraycopy(edges.distances, 0, distances, 0, at);
+            System.arraycopy(edges.children, 0, children, 0, at);
+            System.arraycopy(edges.distances, at, distances, at + 1, n - at);
+            System.arraycopy(edges.children, at, children, at + 1, n - at);
+            distances[at] = d;
+            children[at] = child;
+            node.edges = new Edges(distances, children);
+            return;
+        }
+    }
+
+    // remove a saying; its node stays in the tree to keep the paths to its children
+    void remove(Saying saying) {
+        String phrase = Saying.fold(saying.getHawaiianWords());
+        int[] previous = new int[phrase.length() + 1];
+        int[] current = new int[phrase.length() + 1];
+        BKNode node = root;
+        while (node != null) {
+            int d = distance(node.phrase, phrase, previous, current);
+            if (d == 0) {
+                // publish a copy of the node's sayings without this one
+                Saying[] sayings = node.sayings;
+                for (int i = 0; i < sayings.length; i++) {
+                    if (sayings[i] == saying) {
+                        Saying[] kept = new Saying[sayings.length - 1];
+                        System.arraycopy(sayings, 0, kept, 0, i);
+                        System.arraycopy(sayings, i + 1, kept, i, kept.length - i);
+                        node.sayings = kept;
+                        break;
+                    }
+                }
+                return;
+            }
+            Edges edges = node.edges;
+            int i = Arrays.binarySearch(edges.distances, d);
+            node = i >= 0 ? edges.children[i] : null;
+        }
+    }
+
+    // Find the sayings whose folded Hawaiian words are within maxDistance edits of the folded
+    // phrase, closest first and alphabetically among equally close ones
+    List<Saying> find(String phrase, int maxDistance) {
+        List<Found> found = new ArrayList<>();
+        BKNode start = root;
+        if (start == null || maxDistance < 0) {
+            return new ArrayList<>();
+        }
+        int[] previous = new int[phrase.length() + 1];
+        int[] current = new int[phrase.length() + 1];
+        Deque<BKNode> pending = new ArrayDeque<>();
+        pending.push(start);
+        while (!pending.isEmpty()) {
+            BKNode node = pending.pop();
+            int d = distance(node.phrase, phrase, previous, current);
+            if (d <= maxDistance) {
+                for (Saying saying : node.sayings) {
+                    found.add(new Found(saying, d));
+                }
+            }
+            // only children between d - maxDistance and d + maxDistance away can be close enough
+            Edges edges = node.edges;
+            int from = lowerBound(edges.distances, d - maxDistance);
+            for (int i = from; i < edges.distances.length && edges.distances[i] <= d + maxDistance; i++) {
+                pending.push(edges.children[i]);
+            }
+        }
+
+        // sort by distance, then alphabetically
+        found.sort(Comparator.comparingInt((Found f) -> f.distance).thenComparing(f -> f.saying, order));
+        List<Saying> result = new ArrayList<>(found.size());
+        for (Found f : found) {
+            result.add(f.saying);
+        }
+        return result;
+    }
+
+    // find the first of the sorted distances that is not below the given one
+    private static int lowerBound(int[] distances, int d) {
+        int i = Arrays.binarySearch(distances, d);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    // compute the Levenshtein distance between a and b, using two rows of length b.length() + 1
+    private static int distance(String a, String b, int[] previous, int[] current) {
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] row = previous;
+            previous = current;
+            current = row;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,609 @@
+package sayingsDatabase;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Function;
+
+/**
+ * The BPlusTree class is a storage engine for SayingsDatabase laid out for
+ * the cache rather than for the fewest comparisons. Values live only in the
+ * leaves, next to an array of their keys, and inner nodes hold up to FANOUT
+ * children with the keys that separate them. A lookup in a million sayings
+ * visits four nodes instead of twenty, and each node's keys sit in one
+ * contiguous array, so a search reads a few cache lines per level instead of
+ * following a pointer per comparison. Every inner node counts the values
+ * under it, so rank and select stay O(log n).
+ *
+ * Like OrderedTree, nodes are never changed once they are in the tree: a
+ * change copies the nodes on its path (whole arrays, which is the price of
+ * wide nodes) and then publishes the new root. A node that deletions leave
+ * less than half full is merged with a neighbour when the two fit in one.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ * @param <K> type of the keys the values are ordered by
+ * @param <V> type of the values stored in the tree
+ */
+class BPlusTree<K, V> extends OrderedStore<K, V> {
+    static final int LEAF_CAPACITY = 64; // most values a leaf holds before it splits
+    static final int FANOUT = 64; // most children an inner node holds before it splits
+
+    // internal node class for both kinds of node; size counts the values in the subtree
+    private abstract static class Node {
+        final int size;
+
+        Node(int size) {
+            this.size = size;
+        }
+    }
+
+    // a leaf holding values in key order, with their keys in a parallel array
+    private static final class Leaf extends Node {
+        final Object[] keys;
+        final Object[] values;
+
+        Leaf(Object[] keys, Object[] values) {
+            super(values.length);
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    // an inner node: keys[i] is the smallest key under children[i + 1]
+    private static final class Inner extends Node {
+        final Object[] keys;
+        final Node[] children;
+
+        Inner(Object[] keys, Node[] children) {
+            super(sizeOf(children));
+            this.keys = keys;
+            this.children = children;
+        }
+
+        // add up the sizes of the children
+        private static int sizeOf(Node[] children) {
+            int size = 0;
+            for (Node child : children) {
+                size += child.size;
+            }
+            return size;
+        }
+    }
+
+    private volatile Node root; // root of the tree (null when empty), replaced as a whole by every change
+
+    // constructor for an empty tree ordering values by the key extracted from each one
+    BPlusTree(Function<? super V, ? extends K> keyOf, Comparator<? super K> comparator) {
+        super(keyOf, comparator);
+    }
+
+    // compare a key with a key stored in a node
+    @SuppressWarnings("unchecked")
+    private int compare(K key, Object other) {
+        return comparator.compare(key, (K) other);
+    }
+
+    // get the value at a position of a leaf
+    @SuppressWarnings("unchecked")
+    private static <V> V valueAt(Leaf leaf, int i) {
+        return (V) leaf.values[i];
+    }
+
+    // find the first of the n keys that is not below the key (or above it, if strict)
+    private int search(Object[] keys, int n, K key, boolean strict) {
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(key, keys[mid]);
+            if (cmp > 0 || (strict && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // find the child of an inner node whose keys cover the key
+    private int childFor(Inner inner, K key) {
+        return search(inner.keys, inner.keys.length, key, true);
+    }
+
+    @Override
+    int size() {
+        Node node = root;
+        return node == null ? 0 : node.size;
+    }
+
+    @Override
+    int height() {
+        return levels(root);
+    }
+
+    // count the levels below and including a node, which every path down from it goes through
+    private static int levels(Node node) {
+        int levels = 0;
+        for (; node != null; levels++) {
+            node = node instanceof Inner ? ((Inner) node).children[0] : null;
+        }
+        return levels;
+    }
+
+    // record the nodes a lookup going down one path from a node visits
+    private void descended(Node node) {
+        if (visits != null) {
+            visited(levels(node));
+        }
+    }
+
+    @Override
+    V get(K key) {
+        Node node = root;
+        if (node == null) {
+            visited(0);
+            return null;
+        }
+        int nodes = 1;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[childFor(inner, key)];
+            nodes++;
+        }
+        visited(nodes);
+        Leaf leaf = (Leaf) node;
+        int i = search(leaf.keys, leaf.keys.length, key, false);
+        return i < leaf.keys.length && compare(key, leaf.keys[i]) == 0 ? valueAt(leaf, i) : null;
+    }
+
+    @Override
+    boolean add(V value) {
+        Node current = root;
+        K key = keyOf.apply(value);
+        if (current == null) {
+            root = new Leaf(new Object[] { key }, new Object[] { value });
+            return true;
+        }
+        Node[] updated = insert(current, key, value);
+        if (updated == null) {
+            return false;
+        }
+        // a split root gets a new root above the two halves
+        root = updated.length == 1 ? updated[0]
+                : new Inner(new Object[] { firstKey(updated[1]) }, updated);
+        return true;
+    }
+
+    // insert into a subtree, returning its copy (or the two halves it split into),
+    // or null if the key is already there
+    private Node[] insert(Node node, K key, V value) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int n = leaf.keys.length;
+            int at = search(leaf.keys, n, key, false);
+            if (at < n && compare(key, leaf.keys[at]) == 0) {
+                return null; // Duplicate keys not allowed
+            }
+            Object[] keys = inserted(leaf.keys, at, key);
+            Object[] values = inserted(leaf.values, at, value);
+            if (n + 1 <= LEAF_CAPACITY) {
+                return new Node[] { new Leaf(keys, values) };
+            }
+            // split the full leaf in half
+            rebalances++;
+            int half = (n + 1) >>> 1;
+            return new Node[] {
+                    new Leaf(slice(keys, 0, half), slice(values, 0, half)),
+                    new Leaf(slice(keys, half, n + 1), slice(values, half, n + 1)) };
+        }
+
+        Inner inner = (Inner) node;
+        int i = childFor(inner, key);
+        Node[] updated = insert(inner.children[i], key, value);
+        if (updated == null) {
+            return null;
+        }
+        if (updated.length == 1) {
+            Node[] children = inner.children.clone();
+            children[i] = updated[0];
+            return new Node[] { new Inner(inner.keys, children) };
+        }
+
+        // the child split, so the right half becomes a new child after it
+        Node[] children = inner.children.clone();
+        children[i] = updated[0];
+        children = inserted(children, i + 1, updated[1]);
+        Object[] keys = inserted(inner.keys, i, firstKey(updated[1]));
+        int c = children.length;
+        if (c <= FANOUT) {
+            return new Node[] { new Inner(keys, children) };
+        }
+        // split the full node in half; the key between the halves moves up to the parent
+        rebalances++;
+        int half = c >>> 1;
+        return new Node[] {
+                new Inner(slice(keys, 0, half - 1), slice(children, 0, half)),
+                new Inner(slice(keys, half, c - 1), slice(children, half, c)) };
+    }
+
+    @Override
+    V remove(K key) {
+        Node current = root;
+        List<V> removed = new ArrayList<>(1);
+        Node updated = current == null ? null : delete(current, key, removed);
+        if (removed.isEmpty()) {
+            return null;
+        }
+        // a root left with a single child gives way to it
+        while (updated instanceof Inner && ((Inner) updated).children.length == 1) {
+            updated = ((Inner) updated).children[0];
+        }
+        root = updated;
+        return removed.get(0);
+    }
+
+    // delete a key from a subtree, returning its copy (or null if nothing is left in it), or
+    // the same subtree if the key is not there; the deleted value goes into removed
+    private Node delete(Node node, K key, List<V> removed) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int n = leaf.keys.length;
+            int at = search(leaf.keys, n, key, false);
+            if (at == n || compare(key, leaf.keys[at]) != 0) {
+                return node; // the key is not in the tree
+            }
+            removed.add(valueAt(leaf, at));
+            return n == 1 ? null : new Leaf(without(leaf.keys, at), without(leaf.values, at));
+        }
+
+        Inner inner = (Inner) node;
+        int i = childFor(inner, key);
+        Node updated = delete(inner.children[i], key, removed);
+        if (updated == inner.children[i]) {
+            return node;
+        }
+        if (updated == null) {
+            // drop the empty child along with the key that separates it from a neighbour
+            if (inner.children.length == 1) {
+                return null;
+            }
+            return new Inner(without(inner.keys, i == 0 ? 0 : i - 1), without(inner.children, i));
+        }
+
+        Node[] children = inner.children.clone();
+        Object[] keys = inner.keys;
+        children[i] = updated;
+        // a child that has shrunk to less than half full is merged with a neighbour if they fit in one node
+        if (children.length > 1 && underfull(updated)) {
+            int left = i == 0 ? 0 : i - 1;
+            Node merged = merge(children[left], children[left + 1], keys[left]);
+            if (merged != null) {
+                rebalances++;
+                children = without(children, left + 1);
+                children[left] = merged;
+                keys = without(keys, left);
+            }
+        }
+        return new Inner(keys, children);
+    }
+
+    // check whether a node is less than half full
+    private static boolean underfull(Node node) {
+        if (node instanceof Leaf) {
+            return ((Leaf) node).keys.length < LEAF_CAPACITY / 2;
+        }
+        return ((Inner) node).children.length < FANOUT / 2;
+    }
+
+    // merge two neighbouring nodes at the same level into one, given the key that separates
+    // them, or return null if they do not fit in one node
+    private static Node merge(Node left, Node right, Object separator) {
+        if (left instanceof Leaf) {
+            Leaf a = (Leaf) left;
+            Leaf b = (Leaf) right;
+            if (a.keys.length + b.keys.length > LEAF_CAPACITY) {
+                return null;
+            }
+            return new Leaf(joined(a.keys, b.keys), joined(a.values, b.values));
+        }
+        Inner a = (Inner) left;
+        Inner b = (Inner) right;
+        if (a.children.length + b.children.length > FANOUT) {
+            return null;
+        }
+        // the separator goes between the keys of the two nodes
+        return new Inner(joined(inserted(a.keys, a.keys.length, separator), b.keys), joined(a.children, b.children));
+    }
+
+    // copy an array without the element at the given position
+    private static <T> T[] without(T[] array, int at) {
+        T[] copy = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, at + 1, copy, at, array.length - at - 1);
+        return copy;
+    }
+
+    // copy two arrays one after the other into one
+    private static <T> T[] joined(T[] first, T[] second) {
+        T[] copy = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, copy, first.length, second.length);
+        return copy;
+    }
+
+    // find the smallest key in a subtree
+    private static Object firstKey(Node node) {
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[0];
+        }
+        return ((Leaf) node).keys[0];
+    }
+
+    // copy an array with one more element at the given position
+    private static <T> T[] inserted(T[] array, int at, T element) {
+        T[] copy = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, at, copy, at + 1, array.length - at);
+        copy[at] = element;
+        return copy;
+    }
+
+    // copy the elements in [from, to) of an array
+    private static <T> T[] slice(T[] array, int from, int to) {
+        return Arrays.copyOfRange(array, from, to);
+    }
+
+    // build the tree bottom-up: full leaves first, then full inner nodes over them
+    @Override
+    void build(List<V> sorted) {
+        if (sorted.isEmpty()) {
+            root = null;
+            return;
+        }
+        List<Node> level = new ArrayList<>();
+        for (int from = 0; from < sorted.size(); from += LEAF_CAPACITY) {
+            int to = Math.min(from + LEAF_CAPACITY, sorted.size());
+            Object[] keys = new Object[to - from];
+            Object[] values = new Object[to - from];
+            for (int i = from; i < to; i++) {
+                values[i - from] = sorted.get(i);
+                keys[i - from] = keyOf.apply(sorted.get(i));
+            }
+            level.add(new Leaf(keys, values));
+        }
+        while (level.size() > 1) {
+            List<Node> parents = new ArrayList<>();
+            for (int from = 0; from < level.size(); from += FANOUT) {
+                int to = Math.min(from + FANOUT, level.size());
+                Node[] children = level.subList(from, to).toArray(new Node[0]);
+                Object[] keys = new Object[children.length - 1];
+                for (int i = 1; i < children.length; i++) {
+                    keys[i - 1] = firstKey(children[i]);
+                }
+                parents.add(new Inner(keys, children));
+            }
+            level = parents;
+        }
+        root = level.get(0);
+    }
+
+    @Override
+    V first() {
+        Node node = root;
+        descended(node);
+        return select(node, 0);
+    }
+
+    @Override
+    V last() {
+        Node node = root;
+        descended(node);
+        return node == null ? null : select(node, node.size - 1);
+    }
+
+    @Override
+    V lower(K key) {
+        Node node = root;
+        lookedAround(node);
+        return select(node, rank(node, key, false) - 1);
+    }
+
+    @Override
+    V floor(K key) {
+        Node node = root;
+        lookedAround(node);
+        return select(node, rank(node, key, true) - 1);
+    }
+
+    @Override
+    V ceiling(K key) {
+        Node node = root;
+        lookedAround(node);
+        return select(node, rank(node, key, false));
+    }
+
+    @Override
+    V higher(K key) {
+        Node node = root;
+        lookedAround(node);
+        return select(node, rank(node, key, true));
+    }
+
+    // record the nodes a lookup of the values around a key visits: one path down to rank the
+    // key and another to select the value next to it
+    private void lookedAround(Node node) {
+        if (visits != null) {
+            visited(2 * levels(node));
+        }
+    }
+
+    @Override
+    int rank(K key) {
+        Node node = root;
+        descended(node);
+        return rank(node, key, false);
+    }
+
+    // count the values with keys below the key (or at it too, if inclusive)
+    private int rank(Node node, K key, boolean inclusive) {
+        if (node == null) {
+            return 0;
+        }
+        int rank = 0;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int i = childFor(inner, key);
+            // every child before the one covering the key comes before the key
+            for (int j = 0; j < i; j++) {
+                rank += inner.children[j].size;
+            }
+            node = inner.children[i];
+        }
+        Leaf leaf = (Leaf) node;
+        return rank + search(leaf.keys, leaf.keys.length, key, inclusive);
+    }
+
+    @Override
+    V select(int k) {
+        Node node = root;
+        descended(node);
+        return select(node, k);
+    }
+
+    // find the value at position k in a snapshot of the tree
+    private V select(Node node, int k) {
+        if (node == null || k < 0 || k >= node.size) {
+            return null;
+        }
+        while (node instanceof Inner) {
+            // skip the children that end before position k
+            Node[] children = ((Inner) node).children;
+            int i = 0;
+            while (k >= children[i].size) {
+                k -= children[i++].size;
+            }
+            node = children[i];
+        }
+        return valueAt((Leaf) node, k);
+    }
+
+    @Override
+    List<V> toList() {
+        Node node = root;
+        List<V> values = new ArrayList<>(node == null ? 0 : node.size);
+        for (Iterator<V> it = new LeafIterator(node, 0, null); it.hasNext();) {
+            values.add(it.next());
+        }
+        return values;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new LeafIterator(root, 0, null);
+    }
+
+    @Override
+    Iterator<V> iterator(K from, K to) {
+        Node node = root;
+        LeafIterator values = new LeafIterator(node, from == null ? 0 : rank(node, from, false), to);
+        if (from != null) {
+            values.nodes += levels(node); // the path down to rank the start
+        }
+        return values;
+    }
+
+    @Override
+    Iterator<V> iteratorAt(int offset) {
+        return new LeafIterator(root, Math.max(offset, 0), null);
+    }
+
+    @Override
+    public Spliterator<V> spliterator() {
+        Node node = root; // every part must read the same snapshot
+        return new PositionSpliterator<>(offset -> new LeafIterator(node, offset, null), 0,
+                node == null ? 0 : node.size);
+    }
+
+    // iterator over one snapshot of the tree, walking the values of one leaf after another; it
+    // counts each node it descends into
+    private class LeafIterator extends Traversal<V> {
+        private final Deque<Inner> parents = new ArrayDeque<>(); // inner nodes above the leaf, nearest on top
+        private final Deque<Integer> positions = new ArrayDeque<>(); // child of each parent being walked
+        private final K to; // exclusive upper bound, or null for no bound
+        private Leaf leaf; // leaf being walked, or null when done
+        private int pos; // position of the next value in the leaf
+
+        // descend to the value at position offset (0-based)
+        LeafIterator(Node node, int offset, K to) {
+            super(BPlusTree.this);
+            this.to = to;
+            if (node == null || offset >= node.size) {
+                return;
+            }
+            while (node instanceof Inner) {
+                nodes++;
+                Inner inner = (Inner) node;
+                int i = 0;
+                while (offset >= inner.children[i].size) {
+                    offset -= inner.children[i++].size;
+                }
+                parents.push(inner);
+                positions.push(i);
+                node = inner.children[i];
+            }
+            leaf = (Leaf) node;
+            nodes++;
+            pos = offset;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (leaf != null && pos == leaf.values.length) {
+                nextLeaf();
+            }
+            if (leaf != null && (to == null || compare(to, leaf.keys[pos]) > 0)) {
+                return true;
+            }
+            finish();
+            return false;
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return valueAt(leaf, pos++);
+        }
+
+        // move to the first value of the next leaf, or set leaf to null if there is none
+        private void nextLeaf() {
+            // climb to the nearest parent with a child after the one walked so far
+            while (!parents.isEmpty() && positions.peek() + 1 == parents.peek().children.length) {
+                parents.pop();
+                positions.pop();
+            }
+            if (parents.isEmpty()) {
+                leaf = null;
+                return;
+            }
+            int i = positions.pop() + 1;
+            positions.push(i);
+            // then descend along the leftmost path of that child
+            Node node = parents.peek().children[i];
+            while (node instanceof Inner) {
+                parents.push((Inner) node);
+                positions.push(0);
+                node = ((Inner) node).children[0];
+                nodes++;
+            }
+            leaf = (Leaf) node;
+            nodes++;
+            pos = 0;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package sayingsDatabase;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The BooleanQuery class parses search expressions such as
+ * "kai AND NOT lepo", "water OR wai" or "english:(sea OR ocean) hawaiian:kai"
+ * and evaluates them over the word indexes of a database.
+ *
+ * A term matches a whole word, ignoring case, ʻokina variants and the kahakō,
+ * and text in double quotes matches as a phrase. Terms search the Hawaiian
+ * words and the English translation unless they are qualified with a field
+ * (hawaiian:, english: or explanation:), which may also qualify a group in
+ * parentheses. NOT binds tightest, then AND (which may be left out between
+ * terms), then OR. The operators must be written in capitals; in lowercase
+ * they are ordinary words.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+class BooleanQuery {
+    // fields of a saying a term can search
+    enum Field {
+        HAWAIIAN, ENGLISH, EXPLANATION
+    }
+
+    // fields searched by terms without a field
+    private static final Set<Field> DEFAULT_FIELDS = EnumSet.of(Field.HAWAIIAN, Field.ENGLISH);
+
+    // internal node class for one part of a parsed query
+    private abstract static class Node {
+        // make a cursor over the documents matching this part
+        abstract DocCursor cursor(Map<Field, WordIndex> indexes, int documents);
+    }
+
+    // a word or a quoted phrase searched in some fields
+    private static class Term extends Node {
+        final Set<Field> fields;
+        final String text;
+        final boolean quoted;
+
+        Term(Set<Field> fields, String text, boolean quoted) {
+            this.fields = fields;
+            this.text = text;
+            this.quoted = quoted;
+        }
+
+        @Override
+        DocCursor cursor(Map<Field, WordIndex> indexes, int documents) {
+            List<String> words = Tokenizer.tokenize(text);
+            List<DocCursor> parts = new ArrayList<>();
+            for (Field field : fields) {
+                WordIndex index = indexes.get(field);
+                if (quoted || words.size() > 1) {
+                    // a term like "mālama-ʻāina" is a phrase too
+                    parts.add(new DocCursor.OfArray(index.findPhrase(text, true)));
+                } else if (!words.isEmpty()) {
+                    parts.add(index.cursor(words.get(0)));
+                }
+            }
+            return parts.size() == 1 ? parts.get(0) : new DocCursor.Union(parts);
+        }
+    }
+
+    // parts that must all match, and parts that must not
+    private static class And extends Node {
+        final List<Node> include = new ArrayList<>();
+        final List<Node> exclude = new ArrayList<>();
+
+        @Override
+        DocCursor cursor(Map<Field, WordIndex> indexes, int documents) {
+            List<DocCursor> included = new ArrayList<>();
+            for (Node node : include) {
+                included.add(node.cursor(indexes, documents));
+            }
+            DocCursor cursor = included.isEmpty() ? new DocCursor.All(documents)
+                    : included.size() == 1 ? included.get(0) : new DocCursor.Intersection(included);
+            if (exclude.isEmpty()) {
+                return cursor;
+            }
+            List<DocCursor> excluded = new ArrayList<>();
+            for (Node node : exclude) {
+                excluded.add(node.cursor(indexes, documents));
+            }
+            return new DocCursor.Difference(cursor, new DocCursor.Union(excluded));
+        }
+    }
+
+    // parts of which any may match
+    private static class Or extends Node {
+        final List<Node> parts = new ArrayList<>();
+
+        @Override
+        DocCursor cursor(Map<Field, WordIndex> indexes, int documents) {
+            List<DocCursor> cursors = new ArrayList<>();
+            for (Node node : parts) {
+                cursors.add(node.cursor(indexes, documents));
+            }
+            return new DocCursor.Union(cursors);
+        }
+    }
+
+    private final Node root; // the whole query
+    private final Set<Field> fields; // fields searched by the terms of the query
+
+    private BooleanQuery(Node root, Set<Field> fields) {
+        this.root = root;
+        this.fields = fields;
+    }
+
+    // Parse a query, throwing IllegalArgumentException if it is not well formed
+    static BooleanQuery parse(String expression) {
+        Parser parser = new Parser(expression);
+        Node root = parser.parseOr(DEFAULT_FIELDS);
+        if (parser.pos < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected " + parser.tokens.get(parser.pos).text + " in query.");
+        }
+        return new BooleanQuery(root, parser.searched);
+    }
+
+    // Check whether a term of the query searches the given field
+    boolean searches(Field field) {
+        return fields.contains(field);
+    }
+
+    // Make a cursor over the document numbers of the matching sayings, out of the given
+    // number of documents, using the word index of each field
+    DocCursor cursor(Map<Field, WordIndex> indexes, int documents) {
+        return root.cursor(indexes, documents);
+    }
+
+    // a token of a query: an operator, a parenthesis, a field before a group, or a term
+    private static class Token {
+        final String kind; // "(", ")", "AND", "OR", "NOT", "FIELD" or "TERM"
+        final String text; // the text of a term, or the token as written
+        final Field field; // field of a FIELD token or a qualified term, or null
+        final boolean quoted; // whether a term was in double quotes
+
+        Token(String kind, String text, Field field, boolean quoted) {
+            this.kind = kind;
+            this.text = text;
+            this.field = field;
+            this.quoted = quoted;
+        }
+    }
+
+    // recursive descent parser over the tokens of a query
+    private static class Parser {
+        final List<Token> tokens = new ArrayList<>();
+        final Set<Field> searched = EnumSet.noneOf(Field.class); // fields searched by the terms parsed
+        int pos; // next token to parse
+
+        // split the query into tokens
+        Parser(String query) {
+            int i = 0;
+            while (i < query.length()) {
+                char c = query.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(' || c == ')') {
+                    tokens.add(new Token(String.valueOf(c), String.valueOf(c), null, false));
+                    i++;
+                } else if (c == '"') {
+                    i = quoted(query, i, null);
+                } else {
+                    int start = i;
+                    while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+                            && "()\"".indexOf(query.charAt(i)) < 0) {
+                        i++;
+                    }
+                    i = word(query, query.substring(start, i), i);
+                }
+            }
+        }
+
+        // add the token for a bare word ending at position end, returning where to go on
+        private int word(String query, String word, int end) {
+            if (word.equals("AND") || word.equals("OR") || word.equals("NOT")) {
+                tokens.add(new Token(word, word, null, false));
+                return end;
+            }
+            int colon = word.indexOf(':');
+            Field field = colon < 0 ? null : field(word.substring(0, colon));
+            if (field == null) {
+                tokens.add(new Token("TERM", word, null, false));
+                return end;
+            }
+            String rest = word.substring(colon + 1);
+            if (!rest.isEmpty()) {
+                tokens.add(new Token("TERM", rest, field, false));
+                return end;
+            }
+            // a field right before a quote or a parenthesis qualifies what follows
+            if (end < query.length() && query.charAt(end) == '"') {
+                return quoted(query, end, field);
+            }
+            if (end < query.length() && query.charAt(end) == '(') {
+                tokens.add(new Token("FIELD", word, field, false));
+                return end;
+            }
+            throw new IllegalArgumentException("Missing search term after " + word + " in query.");
+        }
+
+        // add the token for the quoted phrase starting at position start, returning its end
+        private int quoted(String query, int start, Field field) {
+            int end = query.indexOf('"', start + 1);
+            if (end < 0) {
+                throw new IllegalArgumentException("Missing closing quote in query.");
+            }
+            tokens.add(new Token("TERM", query.substring(start + 1, end), field, true));
+            return end + 1;
+        }
+
+        // find the field with the given name, or null if there is none
+        private static Field field(String name) {
+            for (Field field : Field.values()) {
+                if (field.name().equals(name.toUpperCase(Locale.ROOT))) {
+                    return field;
+                }
+            }
+            return null;
+        }
+
+        // check whether the next token is of the given kind
+        private boolean at(String kind) {
+            return pos < tokens.size() && tokens.get(pos).kind.equals(kind);
+        }
+
+        // or := and ("OR" and)*
+        Node parseOr(Set<Field> fields) {
+            Node first = parseAnd(fields);
+            if (!at("OR")) {
+                return first;
+            }
+            Or or = new Or();
+            or.parts.add(first);
+            while (at("OR")) {
+                pos++;
+                or.parts.add(parseAnd(fields));
+            }
+            return or;
+        }
+
+        // and := unary (["AND"] unary)*
+        Node parseAnd(Set<Field> fields) {
+            And and = new And();
+            do {
+                if (at("AND")) {
+                    pos++;
+                }
+                boolean negated = false;
+                while (at("NOT")) {
+                    pos++;
+                    negated = !negated;
+                }
+                (negated ? and.exclude : and.include).add(parsePrimary(fields));
+            } while (pos < tokens.size() && !at("OR") && !at(")"));
+            if (and.include.size() == 1 && and.exclude.isEmpty()) {
+                return and.include.get(0);
+            }
+            return and;
+        }
+
+        // primary := term | "(" or ")" | field "(" or ")"
+        Node parsePrimary(Set<Field> fields) {
+            if (pos >= tokens.size()) {
+                throw new IllegalArgumentException("Missing search term at the end of the query.");
+            }
+            Token token = tokens.get(pos++);
+            if (token.kind.equals("TERM")) {
+                Set<Field> termFields = token.field == null ? fields : EnumSet.of(token.field);
+                searched.addAll(termFields);
+                return new Term(termFields, token.text, token.quoted);
+            }
+            if (token.kind.equals("FIELD")) {
+                fields = EnumSet.of(token.field);
+                token = tokens.get(pos++); // the parenthesis that follows the field
+            }
+            if (!token.kind.equals("(")) {
+                throw new IllegalArgumentException("Unexpected " + token.text + " in query.");
+            }
+            Node group = parseOr(fields);
+            if (!at(")")) {
+                throw new IllegalArgumentException("Missing closing parenthesis in query.");
+            }
+            pos++;
+            return group;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package sayingsDatabase;
+
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A SayingsDatabase that can be shared between threads. Writers take a lock,
+ * build the changed part of the tree from copied nodes and publish the new
+ * root when they are done. Readers (member, first, last, predecessor,
+ * successor, getAllSayings and the word searches) never lock: they work on
+ * the immutable snapshot of the tree that was published when they started,
+ * so reads keep running in parallel while a write is in progress.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+public class ConcurrentSayingsDatabase extends SayingsDatabase {
+    final ReentrantLock writeLock = new ReentrantLock(); // lets one writer in at a time
+
+    // constructor for an empty database kept in an AVL tree
+    public ConcurrentSayingsDatabase() {
+        super();
+    }
+
+    // constructor for an empty database kept in the given storage engine
+    public ConcurrentSayingsDatabase(SayingsDatabase.Storage storage) {
+        super(storage);
+    }
+
+    // Insert a new saying, returning false if it was a duplicate
+    @Override
+    public boolean insert(Saying saying) {
+        writeLock.lock();
+        try {
+            return super.insert(saying);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Delete the saying with the given Hawaiian words, returning false if there is none
+    @Override
+    public boolean delete(String hawaiianWords) {
+        writeLock.lock();
+        try {
+            return super.delete(hawaiianWords);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Replace the saying with the given Hawaiian words by a new saying, returning false if
+    // there is none or the new saying's words belong to another saying
+    @Override
+    public boolean update(String hawaiianWords, Saying newSaying) {
+        writeLock.lock();
+        try {
+            return super.update(hawaiianWords, newSaying);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Insert every saying from the iterator and return how many of them were new
+    @Override
+    public int buildFrom(Iterator<Saying> sayings) {
+        writeLock.lock();
+        try {
+            return super.buildFrom(sayings);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package sayingsDatabase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The DocCursor class walks the document numbers of the sayings matching part
+ * of a query, in increasing order. Cursors over posting lists jump ahead with
+ * a galloping search instead of stepping through every entry, which is how
+ * the sorted lists are skipped through without separate skip pointers, and
+ * the cursors for AND, OR and AND NOT are built on top of them. An
+ * intersection is led by its rarest part and asks the others to jump to each
+ * of its documents, so it costs about as much as its rarest term.
+ *
+ * A cursor starts before the first document (doc() is -1) and ends at
+ * NO_MORE. Cursors are not thread safe, but each query makes its own.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+abstract class DocCursor {
+    static final int NO_MORE = Integer.MAX_VALUE; // doc() once the cursor is used up
+
+    int doc = -1; // current document number
+
+    // Get the current document number
+    int doc() {
+        return doc;
+    }
+
+    // Move to the next document and return its number
+    int nextDoc() {
+        return doc == NO_MORE ? NO_MORE : advance(doc + 1);
+    }
+
+    // Move to the first document at or after target and return its number; a cursor that is
+    // already there does not move
+    abstract int advance(int target);
+
+    // Get an upper bound on the number of documents the cursor can return
+    abstract long cost();
+
+    // Collect every remaining document number
+    int[] toArray() {
+        int[] docs = new int[(int) Math.min(cost(), Integer.MAX_VALUE - 8)];
+        int n = 0;
+        for (int d = nextDoc(); d != NO_MORE; d = nextDoc()) {
+            docs[n++] = d;
+        }
+        return Arrays.copyOf(docs, n);
+    }
+
+    // cursor over the distinct documents of a positional posting list
+    static final class OfPostings extends DocCursor {
+        private final Postings list;
+        private final int count; // entries in the version of the list being read
+        private int i = -1; // entry of the current document
+
+        OfPostings(Postings list) {
+            this.list = list;
+            this.count = list.count();
+        }
+
+        @Override
+        int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            // gallop: double the step until an entry at or past the target is passed
+            int low = i; // an entry below the target (or -1)
+            int step = 1;
+            while (low + step < count && list.doc(low + step) < target) {
+                low += step;
+                step <<= 1;
+            }
+            // then binary search between the last two probes
+            int high = Math.min(low + step, count);
+            while (high - low > 1) {
+                int mid = (low + high) >>> 1;
+                if (list.doc(mid) < target) {
+                    low = mid;
+                } else {
+                    high = mid;
+                }
+            }
+            i = high;
+            doc = i < count ? list.doc(i) : NO_MORE;
+            return doc;
+        }
+
+        @Override
+        long cost() {
+            return count;
+        }
+    }
+
+    // cursor over a sorted array of distinct document numbers
+    static final class OfArray extends DocCursor {
+        private final int[] docs;
+        private int i = -1; // position of the current document
+
+        OfArray(int[] docs) {
+            this.docs = docs;
+        }
+
+        @Override
+        int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            int at = Arrays.binarySearch(docs, i + 1, docs.length, target);
+            i = at >= 0 ? at : -at - 1;
+            doc = i < docs.length ? docs[i] : NO_MORE;
+            return doc;
+        }
+
+        @Override
+        long cost() {
+            return docs.length;
+        }
+    }
+
+    // cursor over every document number below a count
+    static final class All extends DocCursor {
+        private final int count;
+
+        All(int count) {
+            this.count = count;
+        }
+
+        @Override
+        int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            doc = target < count ? target : NO_MORE;
+            return doc;
+        }
+
+        @Override
+        long cost() {
+            return count;
+        }
+    }
+
+    // cursor over the documents of any of its parts
+    static final class Union extends DocCursor {
+        private final List<DocCursor> parts;
+
+        Union(List<DocCursor> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            int min = NO_MORE;
+            for (DocCursor part : parts) {
+                min = Math.min(min, part.advance(target));
+            }
+            doc = min;
+            return doc;
+        }
+
+        @Override
+        long cost() {
+            long cost = 0;
+            for (DocCursor part : parts) {
+                cost += part.cost();
+            }
+            return cost;
+        }
+    }
+
+    // cursor over the documents of all of its parts, led by the rarest one
+    static final class Intersection extends DocCursor {
+        private final List<DocCursor> parts;
+
+        Intersection(List<DocCursor> parts) {
+            this.parts = new ArrayList<>(parts);
+            this.parts.sort(Comparator.comparingLong(DocCursor::cost));
+        }
+
+        @Override
+        int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            DocCursor lead = parts.get(0);
+            int candidate = lead.advance(target);
+            int k = 1;
+            while (candidate != NO_MORE && k < parts.size()) {
+                int d = parts.get(k).advance(candidate);
+                if (d == candidate) {
+                    k++;
+                } else {
+                    // the part has nothing at the candidate, so the lead jumps past it
+                    candidate = lead.advance(d);
+                    k = 1;
+                }
+            }
+            doc = candidate;
+            return doc;
+        }
+
+        @Override
+        long cost() {
+            return parts.get(0).cost();
+        }
+    }
+
+    // cursor over the documents of one part that are not in another
+    static final class Difference extends DocCursor {
+        private final DocCursor include;
+        private final DocCursor exclude;
+
+        Difference(DocCursor include, DocCursor exclude) {
+            this.include = include;
+            this.exclude = exclude;
+        }
+
+        @Override
+        int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            int candidate = include.advance(target);
+            while (candidate != NO_MORE && exclude.advance(candidate) == candidate) {
+                candidate = include.nextDoc();
+            }
+            doc = candidate;
+            return doc;
+        }
+
+        @Override
+        long cost() {
+            return include.cost();
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package sayingsDatabase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ConcurrentSayingsDatabase whose mutations survive a restart. The
+ * database lives in a directory holding at most one complete snapshot and
+ * the write-ahead logs written since it. Every insert, delete and update is
+ * applied in memory and appended to the current log under the write lock,
+ * so the log holds the mutations in the order they were applied, and the
+ * write then waits (outside the lock) for the log to be as durable as the
+ * FsyncPolicy asks. Concurrent writers share fsyncs through group commit.
+ *
+ * Files are numbered by generation: snapshot-N holds the sayings as of the
+ * start of log-N. A checkpoint starts the next log, saves a snapshot that
+ * ends where the new log starts, and then deletes the older files, so the
+ * whole dataset is only rewritten when a checkpoint is asked for. Opening
+ * the directory loads the newest snapshot and replays the logs from its
+ * generation on, dropping a record cut short at the end of the last log.
+ *
+ * If the log cannot be written, the mutation throws UncheckedIOException.
+ * It has been applied in memory, but may not survive a restart. A log that
+ * failed to be written or forced, whether by a writer or by the periodic
+ * syncer, fails for good, since records already acknowledged may have been
+ * lost: every later mutation is refused with UncheckedIOException and every
+ * checkpoint throws, until the directory is opened again and recovers what
+ * reached the disk.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+public class DurableSayingsDatabase extends ConcurrentSayingsDatabase implements Closeable {
+    // how long a mutation waits for its log record to reach the disk
+    public enum FsyncPolicy {
+        EVERY_COMMIT, // until it is forced to disk; concurrent mutations share one fsync
+        PERIODIC, // not at all; the log is forced every SYNC_INTERVAL_MILLIS, so a crash can lose that much
+        NEVER // until it is written to the operating system, which flushes it when it likes
+    }
+
+    // how often the log is forced to disk under FsyncPolicy.PERIODIC
+    static final long SYNC_INTERVAL_MILLIS = 50;
+
+    private static final String SNAPSHOT = "snapshot-";
+    private static final String LOG = "log-";
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private volatile WriteAheadLog log; // log the mutations are appended to (replaced under writeLock)
+    private long generation; // number of the current log (guarded by writeLock)
+    private ScheduledExecutorService syncer; // forces the log under FsyncPolicy.PERIODIC, or null
+
+    // constructor for an empty database; open fills it from the directory
+    private DurableSayingsDatabase(Path directory, FsyncPolicy policy, Storage storage) {
+        super(storage);
+        this.directory = directory;
+        this.policy = policy;
+    }
+
+    // Open the database kept in a directory (created if it does not exist), kept in an AVL tree
+    public static DurableSayingsDatabase open(Path directory, FsyncPolicy policy) throws IOException {
+        return open(directory, policy, Storage.AVL_TREE);
+    }
+
+    // Open the database kept in a directory (created if it does not exist), kept in the given
+    // storage engine: load the newest snapshot and replay the logs written since
+    public static DurableSayingsDatabase open(Path directory, FsyncPolicy policy, Storage storage)
+            throws IOException {
+        Files.createDirectories(directory);
+        DurableSayingsDatabase db = new DurableSayingsDatabase(directory, policy, storage);
+        db.recover();
+        if (policy == FsyncPolicy.PERIODIC) {
+            db.syncer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "sayings-log-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            db.syncer.scheduleWithFixedDelay(db::forceLog, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+        return db;
+    }
+
+    // load the newest snapshot, replay the logs from its generation on and open the last log
+    private void recover() throws IOException {
+        // a snapshot left half written by a checkpoint that did not finish is of no use
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SNAPSHOT + "*.tmp")) {
+            for (Path file : stream) {
+                Files.deleteIfExists(file);
+            }
+        }
+        TreeMap<Long, Path> snapshots = files(SNAPSHOT);
+        TreeMap<Long, Path> logs = files(LOG);
+        long start = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        if (!snapshots.isEmpty()) {
+            deferIndexes(); // built from the tree on first use, as for loadSnapshot
+            super.buildFrom(SayingsSnapshot.load(snapshots.lastEntry().getValue()).iterator());
+        }
+
+        // replay the logs, loading runs of inserts in bulk
+        List<Saying> inserts = new ArrayList<>();
+        long valid = 0;
+        for (Map.Entry<Long, Path> entry : logs.tailMap(start, true).entrySet()) {
+            boolean last = entry.getKey().equals(logs.lastKey());
+            valid = WriteAheadLog.read(entry.getValue(), last, record -> {
+                String[] fields = record.fields;
+                if (record.type == WriteAheadLog.INSERT) {
+                    inserts.add(new Saying(fields[0], fields[1], fields[2]));
+                    return;
+                }
+                super.buildFrom(inserts.iterator());
+                inserts.clear();
+                if (record.type == WriteAheadLog.DELETE) {
+                    super.delete(fields[0]);
+                } else {
+                    super.update(fields[0], new Saying(fields[1], fields[2], fields[3]));
+                }
+            });
+        }
+        super.buildFrom(inserts.iterator());
+
+        // go on appending to the last log, or start one
+        if (logs.isEmpty() || logs.lastKey() < start) {
+            generation = start;
+            log = WriteAheadLog.create(file(LOG, generation));
+        } else {
+            generation = logs.lastKey();
+            log = WriteAheadLog.append(logs.lastEntry().getValue(), valid);
+        }
+        deleteBefore(start);
+    }
+
+    // Insert a new saying, returning false if it was a duplicate
+    @Override
+    public boolean insert(Saying saying) {
+        WriteAheadLog current;
+        long end;
+        writeLock.lock();
+        try {
+            usable();
+            if (!super.insert(saying)) {
+                return false;
+            }
+            current = log;
+            end = current.append(WriteAheadLog.INSERT, saying.getHawaiianWords(), saying.getEnglishTranslation(),
+                    saying.getExplanation());
+        } finally {
+            writeLock.unlock();
+        }
+        commit(current, end);
+        return true;
+    }
+
+    // Delete the saying with the given Hawaiian words, returning false if there is none
+    @Override
+    public boolean delete(String hawaiianWords) {
+        WriteAheadLog current;
+        long end;
+        writeLock.lock();
+        try {
+            usable();
+            if (!super.delete(hawaiianWords)) {
+                return false;
+            }
+            current = log;
+            end = current.append(WriteAheadLog.DELETE, hawaiianWords);
+        } finally {
+            writeLock.unlock();
+        }
+        commit(current, end);
+        return true;
+    }
+
+    // Replace the saying with the given Hawaiian words by a new saying, returning false if
+    // there is none or the new saying's words belong to another saying
+    @Override
+    public boolean update(String hawaiianWords, Saying newSaying) {
+        WriteAheadLog current;
+        long end;
+        writeLock.lock();
+        try {
+            usable();
+            if (!super.update(hawaiianWords, newSaying)) {
+                return false;
+            }
+            current = log;
+            end = current.append(WriteAheadLog.UPDATE, hawaiianWords, newSaying.getHawaiianWords(),
+                    newSaying.getEnglishTranslation(), newSaying.getExplanation());
+        } finally {
+            writeLock.unlock();
+        }
+        commit(current, end);
+        return true;
+    }
+
+    // Insert every saying from the iterator and return how many of them were new. All of them
+    // are logged, duplicates included, and they share a single wait for the log.
+    @Override
+    public int buildFrom(Iterator<Saying> sayings) {
+        List<Saying> incoming = new ArrayList<>();
+        while (sayings.hasNext()) {
+            incoming.add(sayings.next());
+        }
+        WriteAheadLog current;
+        long end = 0;
+        int added;
+        writeLock.lock();
+        try {
+            usable();
+            added = super.buildFrom(incoming.iterator());
+            current = log;
+            if (added > 0) {
+                // replaying them in order drops the same duplicates
+                for (Saying saying : incoming) {
+                    end = current.append(WriteAheadLog.INSERT, saying.getHawaiianWords(),
+                            saying.getEnglishTranslation(), saying.getExplanation());
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        commit(current, end);
+        return added;
+    }
+
+    // refuse a mutation once the log has failed, before it is applied in memory (under writeLock)
+    private void usable() {
+        try {
+            log.check();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // wait for the log to hold everything up to end, as far as the policy asks
+    private void commit(WriteAheadLog current, long end) {
+        try {
+            if (policy == FsyncPolicy.EVERY_COMMIT) {
+                current.sync(end, true);
+            } else if (policy == FsyncPolicy.NEVER) {
+                current.sync(end, false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // force the current log to disk, for the periodic syncer; a failure has no caller to be
+    // reported to, but the log keeps it and refuses every later mutation and checkpoint
+    private void forceLog() {
+        try {
+            log.force();
+        } catch (IOException e) {
+            // kept by the log
+        }
+    }
+
+    // Save a snapshot of the database and delete the logs it covers, so the next open replays
+    // only what was written after it. The current log is forced before the next one is started,
+    // so a crash cannot leave a torn record in a log that is no longer the last one. Writers are
+    // held up while that happens and the sayings are listed, not while the snapshot is written.
+    public void checkpoint() throws IOException {
+        WriteAheadLog previous;
+        List<Saying> sayings;
+        long next;
+        writeLock.lock();
+        try {
+            previous = log;
+            previous.force();
+            next = generation + 1;
+            log = WriteAheadLog.create(file(LOG, next));
+            generation = next;
+            sayings = getAllSayings();
+        } finally {
+            writeLock.unlock();
+        }
+        previous.close();
+        SayingsSnapshot.save(sayings, file(SNAPSHOT, next));
+        deleteBefore(next);
+    }
+
+    // Force the log to disk and close it; the database must not be changed afterwards
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            // not interrupted, since an interrupt during a force would close the log's channel
+            syncer.shutdown();
+            try {
+                syncer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeLock.lock();
+        try {
+            log.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // the path of the snapshot or log of a generation
+    private Path file(String prefix, long generation) {
+        return directory.resolve(prefix + generation);
+    }
+
+    // find the snapshots or logs in the directory by generation
+    private TreeMap<Long, Path> files(String prefix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : stream) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    files.put(Long.parseLong(suffix), file);
+                }
+            }
+        }
+        return files;
+    }
+
+    // delete the snapshots and logs older than a generation, which a newer snapshot covers
+    private void deleteBefore(long generation) throws IOException {
+        for (String prefix : new String[] { SNAPSHOT, LOG }) {
+            for (Path file : files(prefix).headMap(generation).values()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
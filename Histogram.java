@@ -0,0 +1,124 @@
+package sayingsDatabase;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Histogram class counts how often values (latencies in nanoseconds, or
+ * numbers of nodes visited) fall in each of a fixed set of buckets, in the
+ * manner of an HDR histogram: below 64 every value has a bucket of its own,
+ * and each power of two above that is split into 32 buckets of equal width,
+ * so a value is only ever rounded by about 3% whatever its magnitude. The
+ * buckets cover every long, so nothing is ever out of range, and recording a
+ * value is a few shifts and one atomic increment, with no allocation and no
+ * lock. Any number of threads may record while others read.
+ *
+ * Percentiles are read from the buckets, so they are as precise as the
+ * buckets are; the count, mean and maximum are exact. Values recorded while
+ * the histogram is being read may or may not be counted.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+public final class Histogram {
+    private static final int SUB_BITS = 6; // values below 2^SUB_BITS have a bucket each
+    private static final int HALF = 1 << (SUB_BITS - 1); // buckets per power of two above that
+    private static final int BUCKETS = (64 - SUB_BITS) * HALF + (1 << SUB_BITS); // enough for every long
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); // number of values in each bucket
+    private final LongAdder count = new LongAdder(); // number of values recorded
+    private final LongAdder total = new LongAdder(); // sum of the values recorded
+    private final AtomicLong max = new AtomicLong(); // largest value recorded
+
+    // constructor for an empty histogram
+    public Histogram() {
+    }
+
+    // Record a value; negative values count as 0
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.getAndIncrement(bucket(value));
+        count.increment();
+        total.add(value);
+        long largest = max.get();
+        while (value > largest && !max.compareAndSet(largest, value)) {
+            largest = max.get();
+        }
+    }
+
+    // Get the number of values recorded
+    public long getCount() {
+        return count.sum();
+    }
+
+    // Get the mean of the values recorded, or 0 if there are none
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    // Get the largest value recorded, or 0 if there are none
+    public long getMax() {
+        return max.get();
+    }
+
+    // Get the value that the given percentage (0 to 100) of the values recorded are at or
+    // below, to within the width of its bucket, or 0 if there are none
+    public long getValueAtPercentile(double percentile) {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            n += counts.get(i);
+        }
+        if (n == 0) {
+            return 0;
+        }
+        // the rank of the value asked for, counting from 1
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highest(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Forget every value recorded
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    // summarize the histogram, for example "count=10 mean=12.5 p50=12 p99=20 max=20"
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + getMean() + " p50=" + getValueAtPercentile(50) + " p99="
+                + getValueAtPercentile(99) + " max=" + getMax();
+    }
+
+    // find the bucket of a value that is not negative: the power of two it is in picks a group
+    // of buckets, and the SUB_BITS bits below its top bit pick one of them
+    private static int bucket(long value) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    // find the largest value that falls in a bucket
+    private static long highest(int bucket) {
+        if (bucket < (1 << SUB_BITS)) {
+            return bucket;
+        }
+        int shift = bucket / HALF - 1;
+        long sub = bucket - (long) shift * HALF;
+        long last = ((sub + 1) << shift) - 1;
+        return last < 0 ? Long.MAX_VALUE : last;
+    }
+}
@@ -0,0 +1,237 @@
+package sayingsDatabase;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * The OrderedStore class is the storage engine contract behind
+ * SayingsDatabase: an ordered set of values, each identified by a key that is
+ * extracted from the value and compared with a pluggable comparator. The
+ * engines differ in memory layout only, so a database can be built on any of
+ * them and answers every query the same way.
+ *
+ * Every engine is persistent: a change copies what it touches and then
+ * publishes a new root, so every read works on the snapshot it started with.
+ * Only one thread may change a store at a time; any number may read meanwhile.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ * @param <K> type of the keys the values are ordered by
+ * @param <V> type of the values stored
+ */
+abstract class OrderedStore<K, V> implements Iterable<V> {
+    final Function<? super V, ? extends K> keyOf; // extracts the key of a value
+    final Comparator<? super K> comparator; // order of the keys
+
+    // number of rotations (AVL tree) or node splits and merges (B+-tree) changes have made;
+    // only the writer adds to it
+    volatile long rebalances;
+
+    // histogram of the nodes each lookup or traversal visits, or null when they are not counted
+    volatile Histogram visits;
+
+    // constructor for an empty store ordering values by the key extracted from each one
+    OrderedStore(Function<? super V, ? extends K> keyOf, Comparator<? super K> comparator) {
+        this.keyOf = keyOf;
+        this.comparator = comparator;
+    }
+
+    // Get the number of values in the store
+    abstract int size();
+
+    // Get the number of levels a lookup descends through (0 when empty)
+    abstract int height();
+
+    // record the number of nodes a lookup visited, if they are being counted
+    final void visited(int nodes) {
+        Histogram histogram = visits;
+        if (histogram != null) {
+            histogram.record(nodes);
+        }
+    }
+
+    // Find the value with the given key, or null if there is none
+    abstract V get(K key);
+
+    // Add a value, returning false (and leaving the store unchanged) if its key is already there
+    abstract boolean add(V value);
+
+    // Remove the value with the given key and return it, or return null (leaving the store
+    // unchanged) if there is none
+    abstract V remove(K key);
+
+    // replace the whole contents with the given values, which are sorted and have distinct keys
+    abstract void build(List<V> sorted);
+
+    // Get the first value (smallest key), or null if the store is empty
+    abstract V first();
+
+    // Get the last value (largest key), or null if the store is empty
+    abstract V last();
+
+    // Get the value with the largest key below the given key, or null if there is none
+    abstract V lower(K key);
+
+    // Get the value with the largest key at or below the given key, or null if there is none
+    abstract V floor(K key);
+
+    // Get the value with the smallest key at or above the given key, or null if there is none
+    abstract V ceiling(K key);
+
+    // Get the value with the smallest key above the given key, or null if there is none
+    abstract V higher(K key);
+
+    // Get the number of values whose keys come before the given key (O(log n))
+    abstract int rank(K key);
+
+    // Get the value at position k (0-based) in key order, or null if there is none (O(log n))
+    abstract V select(int k);
+
+    // Copy all values into a list in key order
+    abstract List<V> toList();
+
+    // Iterate over the values with keys in [from, to); a null bound means no bound
+    abstract Iterator<V> iterator(K from, K to);
+
+    // Iterate over the values from position offset (0-based) on
+    abstract Iterator<V> iteratorAt(int offset);
+
+    // record the nodes an iterator of this store has visited, for a reader that stops taking
+    // values before the iterator runs out
+    static void finished(Iterator<?> values) {
+        if (values instanceof Traversal) {
+            ((Traversal<?>) values).finish();
+        }
+    }
+
+    // an iterator over a store that counts the nodes it visits, and records them as one
+    // traversal when it runs out, or when its reader stops early and calls finished
+    abstract static class Traversal<V> implements Iterator<V> {
+        private final OrderedStore<?, ?> store; // store whose visits are recorded
+        int nodes; // nodes visited so far
+        private boolean recorded; // whether the nodes have been recorded
+
+        Traversal(OrderedStore<?, ?> store) {
+            this.store = store;
+        }
+
+        // record the nodes visited, the first time the traversal ends
+        final void finish() {
+            if (!recorded) {
+                recorded = true;
+                store.visited(nodes);
+            }
+        }
+    }
+
+    // Split the values for a stream, in key order. The spliterator splits by position, so a
+    // parallel stream divides one snapshot of the store into halves of equal size.
+    @Override
+    public abstract Spliterator<V> spliterator();
+
+    // spliterator over the positions [position, end) of one snapshot of a store; iteratorAt
+    // starts an iterator at a position of that snapshot, which a split does in O(log n)
+    static final class PositionSpliterator<V> implements Spliterator<V> {
+        private final IntFunction<Iterator<V>> iteratorAt;
+        private int position; // position of the next value
+        private final int end; // position after the last value
+        private Iterator<V> values; // started on the first value taken, or null before that
+
+        PositionSpliterator(IntFunction<Iterator<V>> iteratorAt, int position, int end) {
+            this.iteratorAt = iteratorAt;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super V> action) {
+            if (position >= end) {
+                return false;
+            }
+            if (values == null) {
+                values = iteratorAt.apply(position);
+            }
+            position++;
+            V value = values.next();
+            if (position == end) {
+                finished(values); // the part ends here, though the iterator could go on
+            }
+            action.accept(value);
+            return true;
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            // once values are being taken the iterator cannot be shared, so only split before that
+            if (values != null || end - position < 2) {
+                return null;
+            }
+            int mid = (position + end) >>> 1;
+            Spliterator<V> prefix = new PositionSpliterator<>(iteratorAt, position, mid);
+            position = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+        }
+    }
+
+    // Add many values at once and return the ones that were new, in key order. The list is
+    // sorted in place (stably, so of several values with the same key the first one counts)
+    // and duplicates are skipped the same way add skips them. Unless only a few values are
+    // added to a large store, the whole store is then rebuilt bottom-up from the merged
+    // values, so loading into an empty store is a linear build.
+    List<V> addAll(List<V> values) {
+        // the sort takes linear time if the values are already sorted
+        values.sort(Comparator.comparing(keyOf, comparator));
+        List<V> added = new ArrayList<>();
+
+        // a few values are cheaper to insert one by one than to rebuild the whole store
+        if (size() > 0 && (long) values.size() * height() < size()) {
+            for (V value : values) {
+                if (add(value)) {
+                    added.add(value);
+                }
+            }
+            return added;
+        }
+
+        // merge the new values with the ones already in the store, skipping duplicates
+        List<V> existing = toList();
+        List<V> merged = new ArrayList<>(existing.size() + values.size());
+        int i = 0;
+        for (V value : values) {
+            K key = keyOf.apply(value);
+            // copy the existing values that come before the new one
+            int cmp = -1;
+            while (i < existing.size() && (cmp = comparator.compare(keyOf.apply(existing.get(i)), key)) < 0) {
+                merged.add(existing.get(i++));
+            }
+            boolean duplicate = (i < existing.size() && cmp == 0) || (!added.isEmpty()
+                    && comparator.compare(keyOf.apply(added.get(added.size() - 1)), key) == 0);
+            if (!duplicate) {
+                merged.add(value);
+                added.add(value);
+            }
+        }
+        while (i < existing.size()) {
+            merged.add(existing.get(i++));
+        }
+
+        build(merged);
+        return added;
+    }
+}
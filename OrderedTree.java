@@ -0,0 +1,522 @@
+package sayingsDatabase;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Function;
+
+/**
+ * The OrderedTree class is the AVL engine behind AVLTree and the default
+ * engine of SayingsDatabase (BPlusTree is the other). It is a generic AVL
+ * tree of values ordered by a key that is extracted from each value and
+ * compared with a pluggable comparator, so each facade decides what a
+ * saying's key is and how keys compare, while balancing, rank/select and
+ * iterators live in one place.
+ *
+ * Nodes are never changed once they are in the tree: a change copies the
+ * nodes on the path it touches and then publishes the new root, so every
+ * read works on the snapshot of the tree it started with. Only one thread
+ * may change the tree at a time; any number may read meanwhile.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ * @param <K> type of the keys the values are ordered by
+ * @param <V> type of the values stored in the tree
+ */
+class OrderedTree<K, V> extends OrderedStore<K, V> {
+    // internal node class that represents an immutable node in the AVL Tree
+    private static class Node<V> {
+        final V value; // the value that is stored in the node
+        final Node<V> left, right; // left and right children
+        final int height; // height of the node in the tree
+        final int size; // number of values in the subtree rooted at this node
+
+        // constructor for a node with the given children, computing its height and size from theirs
+        Node(V value, Node<V> left, Node<V> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private volatile Node<V> root; // root of the AVL tree, replaced as a whole by every change
+
+    // constructor for an empty tree ordering values by the key extracted from each one
+    OrderedTree(Function<? super V, ? extends K> keyOf, Comparator<? super K> comparator) {
+        super(keyOf, comparator);
+    }
+
+    // helper method to return the height of a node
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    // helper method to return the number of values in a subtree
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // compare a key with the key of the value in a node
+    private int compare(K key, Node<V> node) {
+        return comparator.compare(key, keyOf.apply(node.value));
+    }
+
+    // Get the number of values in the tree
+    @Override
+    int size() {
+        return size(root);
+    }
+
+    // Get the height of the tree (0 when empty)
+    @Override
+    int height() {
+        return height(root);
+    }
+
+    // Find the value with the given key, or null if there is none
+    @Override
+    V get(K key) {
+        Node<V> node = root;
+        int nodes = 0;
+        while (node != null) {
+            nodes++;
+            int cmp = compare(key, node);
+            if (cmp == 0) {
+                visited(nodes);
+                return node.value;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        visited(nodes);
+        return null;
+    }
+
+    // Add a value, returning false (and leaving the tree unchanged) if its key is already there
+    @Override
+    boolean add(V value) {
+        Node<V> current = root;
+        Node<V> updated = insert(current, keyOf.apply(value), value);
+        if (updated == current) {
+            return false;
+        }
+        root = updated;
+        return true;
+    }
+
+    // helper function to insert a value in a subtree and maintain AVL balance; the same
+    // subtree is returned if the key is already there
+    private Node<V> insert(Node<V> node, K key, V value) {
+        // if the current node is null, create a new node with the value
+        if (node == null) {
+            return new Node<>(value, null, null);
+        }
+
+        // compare the new key with the current node's key
+        int cmp = compare(key, node);
+        if (cmp < 0) {
+            // insert in the left subtree if the new key is smaller
+            Node<V> left = insert(node.left, key, value);
+            if (left == node.left) {
+                return node;
+            }
+            node = new Node<>(node.value, left, node.right);
+        } else if (cmp > 0) {
+            // insert in the right subtree if the new key is larger
+            Node<V> right = insert(node.right, key, value);
+            if (right == node.right) {
+                return node;
+            }
+            node = new Node<>(node.value, node.left, right);
+        } else {
+            return node; // if there is a duplicate key, do nothing
+        }
+
+        // balance the tree after insertion
+        return balance(node);
+    }
+
+    // Remove the value with the given key and return it, or null if there is none (O(log n))
+    @Override
+    V remove(K key) {
+        Node<V> current = root;
+        List<V> removed = new ArrayList<>(1);
+        Node<V> updated = delete(current, key, removed);
+        if (updated == current) {
+            return null;
+        }
+        root = updated;
+        return removed.get(0);
+    }
+
+    // helper function to delete a key from a subtree and maintain AVL balance; the same
+    // subtree is returned if the key is not there, and the deleted value goes into removed
+    private Node<V> delete(Node<V> node, K key, List<V> removed) {
+        if (node == null) {
+            return null; // the key is not in the tree
+        }
+
+        int cmp = compare(key, node);
+        if (cmp < 0) {
+            // delete from the left subtree if the key is smaller
+            Node<V> left = delete(node.left, key, removed);
+            if (left == node.left) {
+                return node;
+            }
+            node = new Node<>(node.value, left, node.right);
+        } else if (cmp > 0) {
+            // delete from the right subtree if the key is larger
+            Node<V> right = delete(node.right, key, removed);
+            if (right == node.right) {
+                return node;
+            }
+            node = new Node<>(node.value, node.left, right);
+        } else {
+            removed.add(node.value);
+            // a node with at most one child is replaced by that child
+            if (node.left == null || node.right == null) {
+                return node.left == null ? node.right : node.left;
+            }
+            // otherwise the smallest value of the right subtree takes the node's place
+            Node<V> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node = new Node<>(successor.value, node.left, deleteFirst(node.right));
+        }
+
+        // balance the tree after deletion
+        return balance(node);
+    }
+
+    // helper function to delete the smallest value of a subtree and maintain AVL balance
+    private Node<V> deleteFirst(Node<V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(new Node<>(node.value, deleteFirst(node.left), node.right));
+    }
+
+    // rebuild the tree from sorted values as a perfectly balanced tree, with no rotations
+    @Override
+    void build(List<V> sorted) {
+        root = build(sorted, 0, sorted.size());
+    }
+
+    // build a perfectly balanced subtree from the sorted values in [from, to)
+    private Node<V> build(List<V> sorted, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        // the middle value becomes the root so both halves have the same size
+        int mid = (from + to) >>> 1;
+        Node<V> left = build(sorted, from, mid);
+        Node<V> right = build(sorted, mid + 1, to);
+        return new Node<>(sorted.get(mid), left, right);
+    }
+
+    // calculate the balance factor of a node (left height - right height)
+    private static int getBalance(Node<?> node) {
+        return node == null ? 0 : height(node.left) - height(node.right);
+    }
+
+    // Balance the AVL tree after an insertion or deletion
+    private Node<V> balance(Node<V> node) {
+        int balance = getBalance(node);
+
+        // Left heavy case
+        if (balance > 1) {
+            // if the left child is right heavy, perform a left rotation on the left child
+            if (getBalance(node.left) < 0) {
+                node = new Node<>(node.value, rotateLeft(node.left), node.right);
+            }
+            // right rotation to balance the tree
+            return rotateRight(node);
+        }
+
+        // Right heavy case
+        if (balance < -1) {
+            // if the right child is left heavy, perform a right rotation on the right child
+            if (getBalance(node.right) > 0) {
+                node = new Node<>(node.value, node.left, rotateRight(node.right));
+            }
+            // left rotation to balance the tree
+            return rotateLeft(node);
+        }
+        // return the balanced node
+        return node;
+    }
+
+    // perform a right rotation on a subtree
+    private Node<V> rotateRight(Node<V> y) {
+        rebalances++;
+        Node<V> x = y.left; // set the left child as the new root of the subtree
+        Node<V> T2 = x.right; // the right subtree of x moves under y
+
+        // copy the rotated nodes with their new children (heights and sizes are recomputed)
+        return new Node<>(x.value, x.left, new Node<>(y.value, T2, y.right));
+    }
+
+    // perform a left rotation on a subtree
+    private Node<V> rotateLeft(Node<V> x) {
+        rebalances++;
+        Node<V> y = x.right; // Set the right child as the new root of the subtree
+        Node<V> T2 = y.left; // the left subtree of y moves under x
+
+        // copy the rotated nodes with their new children (heights and sizes are recomputed)
+        return new Node<>(y.value, new Node<>(x.value, x.left, T2), y.right);
+    }
+
+    // Get the first value (smallest key), or null if the tree is empty
+    @Override
+    V first() {
+        Node<V> node = root;
+        if (node == null) {
+            visited(0);
+            return null;
+        }
+        int nodes = 1;
+        while (node.left != null) {
+            node = node.left; // Go to the leftmost node
+            nodes++;
+        }
+        visited(nodes);
+        return node.value;
+    }
+
+    // Get the last value (largest key), or null if the tree is empty
+    @Override
+    V last() {
+        Node<V> node = root;
+        if (node == null) {
+            visited(0);
+            return null;
+        }
+        int nodes = 1;
+        while (node.right != null) {
+            node = node.right; // Go to the rightmost node
+            nodes++;
+        }
+        visited(nodes);
+        return node.value;
+    }
+
+    // Get the value with the largest key below the given key, or null if there is none
+    @Override
+    V lower(K key) {
+        return below(key, false);
+    }
+
+    // Get the value with the largest key at or below the given key, or null if there is none
+    @Override
+    V floor(K key) {
+        return below(key, true);
+    }
+
+    // Get the value with the smallest key at or above the given key, or null if there is none
+    @Override
+    V ceiling(K key) {
+        return above(key, true);
+    }
+
+    // Get the value with the smallest key above the given key, or null if there is none
+    @Override
+    V higher(K key) {
+        return above(key, false);
+    }
+
+    // find the closest value below the key (or equal to it, if inclusive)
+    private V below(K key, boolean inclusive) {
+        Node<V> node = root;
+        V best = null;
+        int nodes = 0;
+        while (node != null) {
+            nodes++;
+            int cmp = compare(key, node);
+            if (cmp > 0 || (inclusive && cmp == 0)) {
+                // this node qualifies, so look for a closer one on the right
+                best = node.value;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        visited(nodes);
+        return best;
+    }
+
+    // find the closest value above the key (or equal to it, if inclusive)
+    private V above(K key, boolean inclusive) {
+        Node<V> node = root;
+        V best = null;
+        int nodes = 0;
+        while (node != null) {
+            nodes++;
+            int cmp = compare(key, node);
+            if (cmp < 0 || (inclusive && cmp == 0)) {
+                // this node qualifies, so look for a closer one on the left
+                best = node.value;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        visited(nodes);
+        return best;
+    }
+
+    // Get the number of values whose keys come before the given key (O(log n))
+    @Override
+    int rank(K key) {
+        int rank = 0;
+        int nodes = 0;
+        Node<V> node = root;
+        while (node != null) {
+            nodes++;
+            if (compare(key, node) <= 0) {
+                node = node.left;
+            } else {
+                // the node and its whole left subtree come before the key
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        visited(nodes);
+        return rank;
+    }
+
+    // Get the value at position k (0-based) in key order, or null if there is none (O(log n))
+    @Override
+    V select(int k) {
+        Node<V> node = root;
+        int nodes = 0;
+        while (node != null) {
+            nodes++;
+            int leftSize = size(node.left);
+            if (k < leftSize) {
+                node = node.left;
+            } else if (k > leftSize) {
+                // skip the left subtree and this node
+                k -= leftSize + 1;
+                node = node.right;
+            } else {
+                visited(nodes);
+                return node.value;
+            }
+        }
+        visited(nodes);
+        return null;
+    }
+
+    // Copy all values into a list in key order
+    @Override
+    List<V> toList() {
+        Node<V> node = root;
+        List<V> values = new ArrayList<>(size(node));
+        inOrderTraversal(node, values);
+        visited(values.size());
+        return values;
+    }
+
+    // collect the values of a subtree in key order
+    private static <V> void inOrderTraversal(Node<V> node, List<V> values) {
+        if (node != null) {
+            inOrderTraversal(node.left, values);
+            values.add(node.value);
+            inOrderTraversal(node.right, values);
+        }
+    }
+
+    // Iterate over all values in key order without copying them into a list
+    @Override
+    public Iterator<V> iterator() {
+        return new RangeIterator(root, null, null);
+    }
+
+    // Iterate over the values with keys in [from, to); a null bound means no bound
+    @Override
+    Iterator<V> iterator(K from, K to) {
+        return new RangeIterator(root, from, to);
+    }
+
+    // Iterate over the values from position offset (0-based) on
+    @Override
+    Iterator<V> iteratorAt(int offset) {
+        return new RangeIterator(root, offset);
+    }
+
+    // Split the values for a stream, in key order
+    @Override
+    public Spliterator<V> spliterator() {
+        Node<V> node = root; // every part must read the same snapshot
+        return new PositionSpliterator<>(offset -> new RangeIterator(node, offset), 0, size(node));
+    }
+
+    // in-order iterator over one snapshot of the tree, limited to the keys in [from, to); it
+    // counts each node it pushes or passes over on the way down
+    private class RangeIterator extends Traversal<V> {
+        private final Deque<Node<V>> stack = new ArrayDeque<>(); // nodes whose value comes next, nearest on top
+        private final K to; // exclusive upper bound, or null for no bound
+
+        // push the path to the first value that is not below from (null for no bound)
+        RangeIterator(Node<V> node, K from, K to) {
+            super(OrderedTree.this);
+            this.to = to;
+            while (node != null) {
+                nodes++;
+                if (from == null || compare(from, node) <= 0) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        // push the path to the value at position offset (0-based)
+        RangeIterator(Node<V> node, int offset) {
+            super(OrderedTree.this);
+            this.to = null;
+            while (node != null) {
+                nodes++;
+                int leftSize = size(node.left);
+                if (offset <= leftSize) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    offset -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!stack.isEmpty() && (to == null || compare(to, stack.peek()) > 0)) {
+                return true;
+            }
+            finish();
+            return false;
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<V> node = stack.pop();
+            // the next values are the leftmost path of the right subtree
+            for (Node<V> child = node.right; child != null; child = child.left) {
+                stack.push(child);
+                nodes++;
+            }
+            return node.value;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package sayingsDatabase;
+
+import java.util.Arrays;
+
+/**
+ * The Postings class is one published version of an append-only list of
+ * sayings, such as the sayings that use a word. Appending fills the next
+ * free slot of the shared array (or a copy of it when it is full) and
+ * returns a new version with a larger count. Readers holding an older
+ * version never look past its count, so a single writer can append while
+ * any number of threads read. A positional list records every use of a word
+ * along with the saying's document number and where in the saying it
+ * occurs, for phrase and boolean queries. Its entries are sorted by
+ * document number, since sayings are numbered in the order they are indexed.
+ * The list of all sayings by document number clears the entry of a deleted
+ * saying, which is how the other lists learn that it is gone.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+class Postings {
+    private final Saying[] sayings; // shared, append-only storage
+    private final int[] docs; // document number of each entry, or null if the list has no positions
+    private final int[] positions; // word position of each entry, or null if the list has no positions
+    private final int count; // number of sayings in this version of the list
+
+    // constructor for a list holding one saying
+    Postings(Saying saying) {
+        this(new Saying[] { saying }, null, null, 1);
+    }
+
+    // constructor for a list holding one use of a word, at the given word position of the
+    // saying with the given document number
+    Postings(Saying saying, int doc, int position) {
+        this(new Saying[] { saying }, new int[] { doc }, new int[] { position }, 1);
+    }
+
+    private Postings(Saying[] sayings, int[] docs, int[] positions, int count) {
+        this.sayings = sayings;
+        this.docs = docs;
+        this.positions = positions;
+        this.count = count;
+    }
+
+    // get the number of sayings in this version of the list
+    int count() {
+        return count;
+    }
+
+    // get the saying at the given position
+    Saying get(int i) {
+        return sayings[i];
+    }
+
+    // get the document number of the saying of the entry at the given position
+    int doc(int i) {
+        return docs[i];
+    }
+
+    // get the word position within its saying of the entry at the given position
+    int position(int i) {
+        return positions[i];
+    }
+
+    // return a version of the list with the saying added at the end; a saying that
+    // is already the last entry (a word used twice in one saying) is not added again
+    Postings append(Saying saying) {
+        if (sayings[count - 1] == saying) {
+            return this;
+        }
+        Saying[] storage = sayings;
+        if (count == storage.length) {
+            storage = Arrays.copyOf(storage, 2 * storage.length);
+        }
+        // readers of this version never look past count, so the slot can be filled in place
+        storage[count] = saying;
+        return new Postings(storage, null, null, count + 1);
+    }
+
+    // return a version of the list in which the entry at the given position no longer has a
+    // saying (get returns null for it), for a saying that has been deleted; the array is
+    // shared, so readers of older versions see the entry go too, at any moment
+    Postings clear(int i) {
+        sayings[i] = null;
+        return new Postings(sayings, docs, positions, count);
+    }
+
+    // return a version of a positional list with one more use of the word added at the end;
+    // the uses of a word in one saying are added one after another, in word order, and
+    // sayings are added in order of their document numbers
+    Postings append(Saying saying, int doc, int position) {
+        Saying[] storage = sayings;
+        int[] numbers = docs;
+        int[] places = positions;
+        if (count == storage.length) {
+            storage = Arrays.copyOf(storage, 2 * storage.length);
+            numbers = Arrays.copyOf(numbers, 2 * numbers.length);
+            places = Arrays.copyOf(places, 2 * places.length);
+        }
+        storage[count] = saying;
+        numbers[count] = doc;
+        places[count] = position;
+        return new Postings(storage, numbers, places, count + 1);
+    }
+}
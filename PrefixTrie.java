@@ -0,0 +1,287 @@
+package sayingsDatabase;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The PrefixTrie class answers word completions for the search box. Every
+ * word of the Hawaiian words and English translation is folded the way the
+ * collation key folds text (lowercase, no ʻokina, no kahakō) and added to a
+ * trie. Each trie node keeps the first TOP_K sayings alphabetically among
+ * all sayings with a word starting with that node's prefix, so a completion
+ * walks the letters of the prefix and copies that list, no matter how many
+ * sayings the database holds.
+ *
+ * The sayings whose word ends at a node are kept in a persistent AVL tree
+ * in the same order. Removing a saying takes it out of those trees in
+ * O(log n) and out of the lists, and refills each list that was full,
+ * deepest node first, from the lists of the node's children and the first
+ * TOP_K + 1 sayings ending a word at the node, so the lists never lose
+ * sayings that belong in them. A removal costs O(log n) for each word plus
+ * O(TOP_K) per child of each node whose full list it was in, however many
+ * sayings end a word there. Until a list is refilled it may still hold the
+ * removed saying, so completions check that what they return is live.
+ *
+ * Like WordIndex, one thread may add or remove while any number of threads complete:
+ * edges and top lists are replaced rather than changed, and the trees of the
+ * sayings that end a word at a node publish a new root on every change.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+class PrefixTrie {
+    static final int TOP_K = 16; // completions precomputed at each node
+
+    private static final Saying[] NO_SAYINGS = new Saying[0];
+    private static final Edges NO_EDGES = new Edges(new char[0], new TrieNode[0]);
+
+    // the children of a node: labels are sorted, and children[i] is reached by labels[i]
+    private static class Edges {
+        final char[] labels;
+        final TrieNode[] children;
+
+        Edges(char[] labels, TrieNode[] children) {
+            this.labels = labels;
+            this.children = children;
+        }
+    }
+
+    // a node of the trie, standing for the prefix spelled by the labels on the path to it
+    private static class TrieNode {
+        volatile Edges edges = NO_EDGES; // children of the node
+        volatile Saying[] top = NO_SAYINGS; // first sayings alphabetically with a word under this prefix
+        volatile OrderedTree<Saying, Saying> ends; // sayings with a word that ends at this node, or null
+    }
+
+    private final TrieNode root = new TrieNode(); // node for the empty prefix
+    private final Comparator<Saying> order; // alphabetical order of the sayings
+
+    // constructor that creates an empty trie returning completions in the given order
+    PrefixTrie(Comparator<Saying> order) {
+        this.order = order;
+    }
+
+    // add every word of the saying's Hawaiian words and English translation
+    void add(Saying saying) {
+        addWords(Saying.fold(saying.getHawaiianWords()), saying);
+        addWords(Saying.fold(saying.getEnglishTranslation()), saying);
+    }
+
+    // add each word of already folded text
+    private void addWords(String text, Saying saying) {
+        int i = 0;
+        while (i < text.length()) {
+            if (!WordIndex.isWordChar(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            // walk down the word, creating nodes as needed and offering the saying to each prefix
+            TrieNode node = root;
+            while (i < text.length() && WordIndex.isWordChar(text.charAt(i))) {
+                node = child(node, text.charAt(i++), true);
+                offer(node, saying);
+            }
+            if (node.ends == null) {
+                node.ends = new OrderedTree<>(end -> end, order);
+            }
+            node.ends.add(saying); // a word used twice in one saying adds it once
+        }
+    }
+
+    // remove a saying from the top lists of the prefixes of its words, then refill the lists
+    // that were full, deepest first, so each node's list is refilled from complete lists
+    void remove(Saying saying) {
+        List<List<TrieNode>> depleted = new ArrayList<>(); // full lists the saying left, by depth
+        removeWords(Saying.fold(saying.getHawaiianWords()), saying, depleted);
+        removeWords(Saying.fold(saying.getEnglishTranslation()), saying, depleted);
+        for (int depth = depleted.size() - 1; depth >= 0; depth--) {
+            for (TrieNode node : depleted.get(depth)) {
+                refill(node, saying);
+            }
+        }
+    }
+
+    // remove the saying from the nodes of each word of already folded text, collecting the
+    // nodes whose full top list it was in by their depth
+    private void removeWords(String text, Saying saying, List<List<TrieNode>> depleted) {
+        int i = 0;
+        while (i < text.length()) {
+            if (!WordIndex.isWordChar(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            TrieNode node = root;
+            int depth = 0;
+            while (i < text.length() && WordIndex.isWordChar(text.charAt(i)) && node != null) {
+                node = child(node, text.charAt(i++), false);
+                if (node != null && withdraw(node, saying)) {
+                    while (depleted.size() <= depth) {
+                        depleted.add(new ArrayList<>());
+                    }
+                    depleted.get(depth).add(node);
+                }
+                depth++;
+            }
+            if (node != null && node.ends != null) {
+                node.ends.remove(saying);
+            }
+            // skip the rest of a word whose path was not found
+            while (i < text.length() && WordIndex.isWordChar(text.charAt(i))) {
+                i++;
+            }
+        }
+    }
+
+    // take the saying out of a node's top list, if it is there, and tell whether the list is
+    // full. A full list is left as it is until it is refilled, since sayings after its end
+    // may belong in it, and completions must not take a shortened full list for all of them.
+    private boolean withdraw(TrieNode node, Saying saying) {
+        Saying[] top = node.top;
+        int i = Arrays.binarySearch(top, saying, order);
+        if (i < 0 || top[i] != saying) {
+            return false;
+        }
+        if (top.length == TOP_K) {
+            return true;
+        }
+        Saying[] updated = new Saying[top.length - 1];
+        System.arraycopy(top, 0, updated, 0, i);
+        System.arraycopy(top, i + 1, updated, i, top.length - i - 1);
+        node.top = updated;
+        return false;
+    }
+
+    // refill a node's top list without the removed saying, with the first TOP_K sayings under
+    // it: the first of the sayings whose word ends at the node (one more than a list holds, in
+    // case the removed saying is among them) and the top lists of its children, which hold the
+    // first of the rest
+    private void refill(TrieNode node, Saying removed) {
+        List<Saying> candidates = new ArrayList<>();
+        OrderedTree<Saying, Saying> ends = node.ends;
+        if (ends != null) {
+            Iterator<Saying> first = ends.iterator();
+            for (int i = 0; i <= TOP_K && first.hasNext(); i++) {
+                candidates.add(first.next());
+            }
+        }
+        for (TrieNode child : node.edges.children) {
+            Collections.addAll(candidates, child.top);
+        }
+        candidates.sort(order);
+        Saying[] top = new Saying[Math.min(candidates.size(), TOP_K)];
+        int n = 0;
+        for (int i = 0; i < candidates.size() && n < top.length; i++) {
+            Saying candidate = candidates.get(i);
+            if (candidate != removed && (n == 0 || candidate != top[n - 1])) { // may be under several children
+                top[n++] = candidate;
+            }
+        }
+        node.top = Arrays.copyOf(top, n);
+    }
+
+    // Get up to limit sayings, alphabetically, with a word that starts with the folded prefix;
+    // live tells whether a saying is still in the database
+    List<Saying> complete(String prefix, int limit, Predicate<Saying> live) {
+        // walk down the prefix
+        TrieNode node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = child(node, prefix.charAt(i), false);
+        }
+        if (node == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        // the precomputed list answers any limit up to its capacity, and holds every saying
+        // under the prefix when it is not full; a full list still holding a removed saying
+        // that leaves it short of the limit is passed over for the sayings under the prefix
+        Saying[] top = node.top;
+        if (limit <= top.length || top.length < TOP_K) {
+            List<Saying> result = new ArrayList<>(Math.min(limit, top.length));
+            for (int i = 0; i < top.length && result.size() < limit; i++) {
+                if (live.test(top[i])) {
+                    result.add(top[i]);
+                }
+            }
+            if (result.size() == limit || top.length < TOP_K) {
+                return result;
+            }
+        }
+
+        // larger limits collect every saying under the prefix
+        Set<Saying> matches = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<TrieNode> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            TrieNode next = pending.pop();
+            OrderedTree<Saying, Saying> ends = next.ends;
+            if (ends != null) {
+                for (Saying saying : ends) {
+                    if (live.test(saying)) {
+                        matches.add(saying);
+                    }
+                }
+            }
+            for (TrieNode child : next.edges.children) {
+                pending.push(child);
+            }
+        }
+        List<Saying> result = new ArrayList<>(matches);
+        result.sort(order);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    // find the child of a node for a letter, adding it if asked to
+    private TrieNode child(TrieNode node, char c, boolean create) {
+        Edges edges = node.edges;
+        int i = Arrays.binarySearch(edges.labels, c);
+        if (i >= 0) {
+            return edges.children[i];
+        }
+        if (!create) {
+            return null;
+        }
+        // publish a copy of the edges with the new child in sorted position
+        int at = -i - 1;
+        int n = edges.labels.length;
+        char[] labels = new char[n + 1];
+        TrieNode[] children = new TrieNode[n + 1];
+        System.arraycopy(edges.labels, 0, labels, 0, at);
+        System.arraycopy(edges.children, 0, children, 0, at);
+        System.arraycopy(edges.labels, at, labels, at + 1, n - at);
+        System.arraycopy(edges.children, at, children, at + 1, n - at);
+        TrieNode child = new TrieNode();
+        labels[at] = c;
+        children[at] = child;
+        node.edges = new Edges(labels, children);
+        return child;
+    }
+
+    // put the saying in the node's top list if it is among the first TOP_K alphabetically
+    private void offer(TrieNode node, Saying saying) {
+        Saying[] top = node.top;
+        int i = Arrays.binarySearch(top, saying, order);
+        if (i >= 0) {
+            return; // already listed through another word
+        }
+        int at = -i - 1;
+        if (at >= TOP_K) {
+            return; // comes after every listed saying of a full list
+        }
+        // publish a copy with the saying inserted, dropping the last one if the list is full
+        int n = Math.min(top.length + 1, TOP_K);
+        Saying[] updated = new Saying[n];
+        System.arraycopy(top, 0, updated, 0, at);
+        updated[at] = saying;
+        System.arraycopy(top, at, updated, at + 1, n - at - 1);
+        node.top = updated;
+    }
+}
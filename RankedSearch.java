@@ -0,0 +1,157 @@
+package sayingsDatabase;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * The RankedSearch class scores sayings against free-text queries with BM25
+ * and keeps only the best k. Every query word is looked up in the word index
+ * of each field (ignoring case, ʻokina variants and the kahakō), which gives
+ * the word's uses in increasing document order. The lists are then merged
+ * one document at a time, so each matching saying is scored once, and its
+ * score is offered to a min-heap holding the k best seen so far. However many
+ * sayings match, only k of them are kept.
+ *
+ * The score of a saying is the sum over the query words and the fields of
+ * the field's weight times the word's BM25 score in that field. Words that
+ * few sayings use count for more, as do words repeated in a short field.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+final class RankedSearch {
+    static final double K1 = 1.2; // how quickly repeating a word stops adding to the score
+    static final double B = 0.75; // how much a long field lowers the score of its words
+
+    private RankedSearch() {
+    }
+
+    // weight of a field in the score: the saying itself counts for more than its explanation
+    private static double weight(BooleanQuery.Field field) {
+        return field == BooleanQuery.Field.EXPLANATION ? 0.5 : 1.0;
+    }
+
+    // the scores one query word gives the documents using it in one field, in document order
+    private static class Contributions {
+        final int[] docs;
+        final double[] scores;
+        final int count;
+        int next; // position of the next document to merge
+
+        Contributions(int[] docs, double[] scores, int count) {
+            this.docs = docs;
+            this.scores = scores;
+            this.count = count;
+        }
+    }
+
+    // a document with its score
+    private static class Hit {
+        final int doc;
+        final double score;
+
+        Hit(int doc, double score) {
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+
+    // better hits first: higher scores, and documents indexed earlier among equal scores
+    private static final Comparator<Hit> BEST_FIRST =
+            Comparator.comparingDouble((Hit hit) -> -hit.score).thenComparingInt(hit -> hit.doc);
+
+    // Get the numbers of the (at most) k live documents that score highest for the query words,
+    // best first, looking only at documents numbered below the given number of documents. The
+    // number of documents and the average field lengths the scores use count live documents only.
+    static int[] topDocs(List<String> words, Map<BooleanQuery.Field, WordIndex> indexes, int documents,
+            int liveDocuments, int k, IntPredicate live) {
+        if (k <= 0 || liveDocuments <= 0) {
+            return new int[0];
+        }
+        List<Contributions> lists = new ArrayList<>();
+        for (Map.Entry<BooleanQuery.Field, WordIndex> entry : indexes.entrySet()) {
+            for (String word : words) {
+                Contributions list = score(entry.getValue(), word, documents, liveDocuments,
+                        weight(entry.getKey()), live);
+                if (list.count > 0) {
+                    lists.add(list);
+                }
+            }
+        }
+
+        // merge the lists one document at a time, keeping the k best in a heap whose root is the worst
+        PriorityQueue<Hit> best = new PriorityQueue<>(k, BEST_FIRST.reversed());
+        while (true) {
+            int doc = DocCursor.NO_MORE;
+            for (Contributions list : lists) {
+                if (list.next < list.count) {
+                    doc = Math.min(doc, list.docs[list.next]);
+                }
+            }
+            if (doc == DocCursor.NO_MORE) {
+                break;
+            }
+            double score = 0;
+            for (Contributions list : lists) {
+                if (list.next < list.count && list.docs[list.next] == doc) {
+                    score += list.scores[list.next++];
+                }
+            }
+            if (best.size() < k) {
+                best.add(new Hit(doc, score));
+            } else if (score > best.peek().score) {
+                best.poll();
+                best.add(new Hit(doc, score));
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(BEST_FIRST);
+        int[] docs = new int[hits.size()];
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = hits.get(i).doc;
+        }
+        return docs;
+    }
+
+    // compute the weighted BM25 score a word gives each document using it in one field
+    private static Contributions score(WordIndex index, String word, int documents, int liveDocuments,
+            double weight, IntPredicate live) {
+        long[] uses = index.uses(word, true);
+
+        // count the uses in each document (they are next to each other), and the documents
+        int[] docs = new int[uses.length];
+        int[] frequencies = new int[uses.length];
+        int count = 0;
+        for (long use : uses) {
+            int doc = WordIndex.doc(use);
+            if (doc >= documents) {
+                break; // indexed after the query started
+            }
+            if (!live.test(doc)) {
+                continue; // deleted
+            }
+            if (count > 0 && docs[count - 1] == doc) {
+                frequencies[count - 1]++;
+            } else {
+                docs[count] = doc;
+                frequencies[count++] = 1;
+            }
+        }
+
+        // rarer words count for more
+        double idf = Math.log(1 + (liveDocuments - count + 0.5) / (count + 0.5));
+        double averageLength = Math.max(index.averageLength(liveDocuments), 1);
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            double tf = frequencies[i];
+            double norm = K1 * (1 - B + B * index.length(docs[i]) / averageLength);
+            scores[i] = weight * idf * tf * (K1 + 1) / (tf + norm);
+        }
+        return new Contributions(docs, scores, count);
+    }
+}
@@ -0,0 +1,312 @@
+package sayingsDatabase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * The ResultCache class keeps the results of recent word searches and
+ * predecessor/successor lookups of a SayingsDatabase, so the popular ones
+ * are answered without searching again. It holds at most a fixed number of
+ * results and evicts the least recently used one to make room.
+ *
+ * A change to the database removes exactly the results it can affect: the
+ * word searches whose word the changed saying's text contains (in the field
+ * searched), and the lookups whose answer the changed saying's key falls
+ * between the query and the cached answer, or is. Every other result stays
+ * valid. A result computed while a change was being made is not kept, since
+ * it may have been read from the data before the change.
+ *
+ * A change does not look at every result to find those. Word searches are
+ * filed under the first PREFIX letters of their word, so only the searches
+ * filed under a piece of the changed text are checked. Lookups are filed in
+ * sorted maps by the key of their query, and since their answers are in the
+ * same order as their queries, the lookups a key changes are a run of
+ * neighbours next to it, which ends at the first lookup it does not change.
+ *
+ * The counters of hits, misses and evictions tell whether the cache is big
+ * enough. The cache is guarded by its own lock, which is not held while a
+ * search that missed runs, so misses still run in parallel.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+public final class ResultCache {
+    // kinds of cached results
+    enum Kind {
+        HAWAIIAN_WORD, // withWord and MeHua
+        ENGLISH_WORD, // withWordInEnglish
+        PREDECESSOR, // predecessor
+        SUCCESSOR // successor
+    }
+
+    private static final Object NONE = new Object(); // cached answer of a lookup that found nothing
+    static final int PREFIX = 3; // leading letters of its word a word search is filed under
+
+    // what a result was computed for
+    private static final class Key {
+        final Kind kind;
+        final String query;
+
+        Key(Kind kind, String query) {
+            this.kind = kind;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).kind == kind && ((Key) other).query.equals(query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kind.hashCode() + query.hashCode();
+        }
+    }
+
+    // a cached result, with what is needed to tell whether a change affects it
+    private static final class Entry {
+        final Object result; // a List of sayings for word searches, a Saying or NONE for lookups
+        final TextMatcher matcher; // matcher of the word, for word searches
+        final String key; // where the result is filed: the start of the lowercased word, or the query's collation key
+
+        Entry(Object result, TextMatcher matcher, String key) {
+            this.result = result;
+            this.matcher = matcher;
+            this.key = key;
+        }
+    }
+
+    private final int capacity; // most results kept
+    private final LinkedHashMap<Key, Entry> entries; // results from least to most recently used
+    private final Map<String, Map<Key, Entry>> hawaiianWords = new HashMap<>(); // Hawaiian word searches by start
+    private final Map<String, Map<Key, Entry>> englishWords = new HashMap<>(); // English word searches by start
+    private final TreeMap<String, Map<Key, Entry>> predecessors = new TreeMap<>(); // by collation key of the query
+    private final TreeMap<String, Map<Key, Entry>> successors = new TreeMap<>(); // by collation key of the query
+    private long version; // number of changes seen, so results computed during one are not kept
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // constructor for an empty cache that keeps at most capacity results
+    ResultCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive.");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > ResultCache.this.capacity) {
+                    evictions++;
+                    unfile(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Get the sayings found by a word search from the cache, or run the search and keep a copy
+    // of what it finds
+    List<Saying> sayings(Kind kind, String word, Supplier<List<Saying>> search) {
+        long since;
+        synchronized (this) {
+            Entry entry = lookup(kind, word);
+            if (entry != null) {
+                @SuppressWarnings("unchecked")
+                List<Saying> cached = (List<Saying>) entry.result;
+                return new ArrayList<>(cached);
+            }
+            since = version;
+        }
+        // search outside the lock, so searches that miss run in parallel
+        List<Saying> result = search.get();
+        synchronized (this) {
+            if (since == version) {
+                TextMatcher matcher = new TextMatcher(word);
+                put(new Key(kind, word), new Entry(new ArrayList<>(result), matcher, matcher.prefix(PREFIX)));
+            }
+        }
+        return result;
+    }
+
+    // Get the answer of a lookup (null if it finds nothing) from the cache, or run the lookup
+    // and keep its answer
+    Saying saying(Kind kind, String hawaiianWords, Supplier<Saying> lookup) {
+        long since;
+        synchronized (this) {
+            Entry entry = lookup(kind, hawaiianWords);
+            if (entry != null) {
+                return entry.result == NONE ? null : (Saying) entry.result;
+            }
+            since = version;
+        }
+        Saying result = lookup.get();
+        synchronized (this) {
+            if (since == version) {
+                put(new Key(kind, hawaiianWords),
+                        new Entry(result == null ? NONE : result, null, Saying.collationKey(hawaiianWords)));
+            }
+        }
+        return result;
+    }
+
+    // Remove the results that a saying being added or removed can change
+    synchronized void invalidate(Saying saying) {
+        version++;
+        List<Key> stale = new ArrayList<>();
+        staleSearches(hawaiianWords, saying.getHawaiianWords(), stale);
+        staleSearches(englishWords, saying.getEnglishTranslation(), stale);
+
+        // the answer of a predecessor is the greatest key below the query's, so the key changes
+        // the lookups just above it, up to the first whose answer is above it
+        String key = saying.getCollationKey();
+        for (Map<Key, Entry> lookups : predecessors.tailMap(key, false).values()) {
+            if (answersPast(lookups, key, 1)) {
+                break;
+            }
+            stale.addAll(lookups.keySet());
+        }
+        // and the answer of a successor is the least key above the query's
+        for (Map<Key, Entry> lookups : successors.headMap(key, false).descendingMap().values()) {
+            if (answersPast(lookups, key, -1)) {
+                break;
+            }
+            stale.addAll(lookups.keySet());
+        }
+
+        for (Key affected : stale) {
+            Entry entry = entries.remove(affected);
+            if (entry != null) {
+                unfile(affected, entry);
+            }
+        }
+    }
+
+    // collect the word searches whose word the text contains: each is filed under the start of
+    // its word, which is a piece of up to PREFIX letters of any text containing the word
+    private static void staleSearches(Map<String, Map<Key, Entry>> searches, String text, List<Key> stale) {
+        if (searches.isEmpty()) {
+            return;
+        }
+        Set<String> pieces = new HashSet<>();
+        pieces.add(""); // an empty word is in every text
+        StringBuilder piece = new StringBuilder(PREFIX);
+        for (int i = 0; i < text.length(); i++) {
+            piece.setLength(0);
+            for (int j = i; j < text.length() && j < i + PREFIX; j++) {
+                piece.append(TextMatcher.fold(text.charAt(j)));
+                pieces.add(piece.toString());
+            }
+        }
+        for (String start : pieces) {
+            Map<Key, Entry> filed = searches.get(start);
+            if (filed != null) {
+                for (Map.Entry<Key, Entry> search : filed.entrySet()) {
+                    if (search.getValue().matcher.matches(text)) {
+                        stale.add(search.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    // check whether lookups with the same query found an answer past the key, in the direction
+    // of the sign (1 for above, -1 for below), which the key cannot change
+    private static boolean answersPast(Map<Key, Entry> lookups, String key, int sign) {
+        Object answer = lookups.values().iterator().next().result;
+        return answer != NONE && Integer.signum(((Saying) answer).getCollationKey().compareTo(key)) == sign;
+    }
+
+    // Remove every result, for changes too large to check result by result
+    synchronized void clear() {
+        version++;
+        entries.clear();
+        hawaiianWords.clear();
+        englishWords.clear();
+        predecessors.clear();
+        successors.clear();
+    }
+
+    // keep a result, filing it where invalidate looks for it
+    private void put(Key key, Entry entry) {
+        Entry replaced = entries.put(key, entry);
+        if (replaced != null) {
+            unfile(key, replaced);
+        }
+        filed(key.kind).computeIfAbsent(entry.key, start -> new HashMap<>()).put(key, entry);
+    }
+
+    // take a result that is no longer kept out of where it is filed
+    private void unfile(Key key, Entry entry) {
+        Map<String, Map<Key, Entry>> index = filed(key.kind);
+        Map<Key, Entry> filed = index.get(entry.key);
+        if (filed != null && filed.remove(key) != null && filed.isEmpty()) {
+            index.remove(entry.key);
+        }
+    }
+
+    // find where the results of a kind are filed
+    private Map<String, Map<Key, Entry>> filed(Kind kind) {
+        switch (kind) {
+            case HAWAIIAN_WORD:
+                return hawaiianWords;
+            case ENGLISH_WORD:
+                return englishWords;
+            case PREDECESSOR:
+                return predecessors;
+            default:
+                return successors;
+        }
+    }
+
+    // find a cached result, counting the hit or miss
+    private Entry lookup(Kind kind, String query) {
+        Entry entry = entries.get(new Key(kind, query));
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    // Get the most results the cache keeps
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Get the number of results in the cache
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Get the number of searches and lookups answered from the cache
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    // Get the number of searches and lookups that were not in the cache
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // Get the number of results removed to make room for newer ones
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // summarize the counters, for example "hits=90 misses=10 evictions=0 size=10/1000"
+    @Override
+    public synchronized String toString() {
+        return "hits=" + hits + " misses=" + misses + " evictions=" + evictions + " size=" + entries.size() + "/"
+                + capacity;
+    }
+}
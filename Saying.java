@@ -11,6 +11,7 @@ public class Saying {
   private String hawaiianWords; // single string of Hawaiian words in the saying
   private String englishTranslation; // English translation of the saying
   private String sayingExplanation; // explanation of the saying
+  private final String collationKey; // precomputed key used to order sayings alphabetically
 
   // constructor to initialize the Saying object with Hawaiian words, English translation, 
   // and an explanation
@@ -18,6 +19,13 @@ public class Saying {
     this.hawaiianWords = hawaiianWords; // assign the Hawaiian words
     this.englishTranslation = englishTranslation; // assign the English translation
     this.sayingExplanation = sayingExplanation; // assign the explanation
+    this.collationKey = collationKey(hawaiianWords); // build the sort key once
+  }
+
+  // constructor for subclasses that keep the text elsewhere and override the getters;
+  // only the collation key, computed from the Hawaiian words beforehand, is stored here
+  Saying(String collationKey) {
+    this.collationKey = collationKey;
   }
 
   // Overloaded constructor without explanation
@@ -41,11 +49,91 @@ public class Saying {
     return sayingExplanation;
   }
 
+  // get the precomputed collation key of the Hawaiian words
+  String getCollationKey() {
+    return collationKey;
+  }
+
+  // codes of the second level of the collation key, in the order of the characters they stand for
+  private static final char OKINA_BEFORE = '\u0001'; // ʻokina before a letter above U+02BB
+  private static final char PLAIN = '\u0002';        // letter as it is in the first level
+  private static final char KAHAKO = '\u0003';       // vowel with a kahakō
+  private static final char OKINA_AFTER = '\u0004';  // any other ʻokina
+
+  // Build the collation key of some Hawaiian words. Sayings are ordered first by their
+  // text with case folded, the ʻokina (and the apostrophes used in its place) ignored and
+  // the kahakō removed, so "ʻAu" sorts next to "Au" and "Āina" next to "Aina". Words that
+  // are equal on that level are then ordered by their lowercase text, with every ʻokina
+  // variant written as U+02BB, which puts plain vowels before marked ones. Keys compare
+  // with String.compareTo, and equal keys mean the same saying.
+  //
+  // The second level only has to tell apart texts that fold the same, which differ only
+  // in where the ʻokina are and which vowels have a kahakō, so it is written as one small
+  // code per character instead of the text itself. That keeps the key in one byte per
+  // character (Latin-1) even when the text has an ʻokina or a kahakō, and compares the
+  // same way the lowercase text would.
+  static String collationKey(String hawaiianWords) {
+    StringBuilder key = new StringBuilder(2 * hawaiianWords.length() + 1);
+    // first level: folded letters only
+    fold(hawaiianWords, key);
+    int folded = key.length();
+    // separator that sorts below every character, so shorter words come first
+    key.append('\u0000');
+    // second level: a code for each character of the lowercase text
+    int next = 0; // position in the first level of the next letter that is not an ʻokina
+    for (int i = 0; i < hawaiianWords.length(); i++) {
+      char c = hawaiianWords.charAt(i);
+      if (isOkina(c)) {
+        // U+02BB sorts after the letter it stands before, unless that letter is beyond it
+        key.append(next < folded && key.charAt(next) > '\u02BB' ? OKINA_BEFORE : OKINA_AFTER);
+      } else {
+        char lower = Character.toLowerCase(c);
+        key.append(foldKahako(lower) != lower ? KAHAKO : PLAIN);
+        next++;
+      }
+    }
+    return key.toString();
+  }
+
+  // Fold text the way the first level of the collation key does: lowercase, without
+  // the ʻokina and with the kahakō removed
+  static String fold(String text) {
+    return fold(text, new StringBuilder(text.length())).toString();
+  }
+
+  // append the folded text to the builder
+  private static StringBuilder fold(String text, StringBuilder folded) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (!isOkina(c)) {
+        folded.append(foldKahako(Character.toLowerCase(c)));
+      }
+    }
+    return folded;
+  }
+
+  // check whether a character is the ʻokina or one of the apostrophes written in its place
+  static boolean isOkina(char c) {
+    return c == '\u02BB' || c == '\'' || c == '\u2018' || c == '\u2019' || c == '`';
+  }
+
+  // replace a lowercase vowel with a kahakō (macron) by the plain vowel
+  static char foldKahako(char c) {
+    switch (c) {
+      case '\u0101': return 'a';
+      case '\u0113': return 'e';
+      case '\u012B': return 'i';
+      case '\u014D': return 'o';
+      case '\u016B': return 'u';
+      default: return c;
+    }
+  }
+
   // override the toString() method to format the string representation of the Saying object
   @Override
   public String toString() {
-    return "Hawaiian: " + hawaiianWords + "\nTranslation: " + englishTranslation + "\nExplanation: "
-        + sayingExplanation;
+    return "Hawaiian: " + getHawaiianWords() + "\nTranslation: " + getEnglishTranslation() + "\nExplanation: "
+        + getExplanation();
   }
 
 }
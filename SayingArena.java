@@ -0,0 +1,305 @@
+package sayingsDatabase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The SayingArena class keeps the text of many sayings as UTF-8 bytes in a
+ * few large shared buffers, instead of three String objects per saying.
+ * Hawaiian text is mostly ASCII, but a single ʻokina or kahakō makes a
+ * String store every character in two bytes; in UTF-8 those letters take
+ * two bytes and the rest one. Translations and explanations are stored once
+ * however many sayings share them: a hash table over the stored bytes finds
+ * an identical earlier text (a boilerplate explanation, for example), and
+ * the new saying points at it.
+ *
+ * The sayings made by compact keep only a reference to the chunk holding
+ * each field and the field's offset in it, and decode the field into a new
+ * String each time a getter is called. The collation key is still kept as a
+ * String, since every lookup in the tree compares it, but it takes one byte
+ * per character.
+ *
+ * An arena made by offHeap keeps the translations and explanations outside
+ * the Java heap, in direct ByteBuffers, and the Hawaiian words in ordinary
+ * Strings, since the indexes and lookups read them. The garbage collector
+ * then only sees the small saying objects: the old generation holds no text
+ * it would have to mark or copy but the Hawaiian words. The direct buffers
+ * count against -XX:MaxDirectMemorySize and are freed once the arena and
+ * every saying made from it are unreachable.
+ *
+ * The arena only grows: the text of a saying that is deleted, or dropped as
+ * a duplicate, stays in it. Adding is synchronized, and the sayings made can
+ * be read from any thread once a database has published them.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+public final class SayingArena {
+    static final int CHUNK_SIZE = 1 << 20; // size of the buffers the text is kept in
+
+    private static final long EMPTY = -1; // marks an unused slot of the hash table
+
+    private final boolean offHeap; // whether the chunks are direct buffers
+    private ByteBuffer[] chunks = new ByteBuffer[8]; // the buffers, in the order they were started
+    private int chunkCount;     // number of chunks started
+    private int position;       // where the next text goes in the last chunk
+    private long[] slots;       // places of the distinct texts, by hash with linear probing
+    private int distinct;       // number of distinct texts in the hash table
+    private long bytes;         // number of bytes used in the chunks
+
+    // constructor that creates an empty arena on the heap
+    public SayingArena() {
+        this(false);
+    }
+
+    // constructor that creates an empty arena on or off the heap
+    private SayingArena(boolean offHeap) {
+        this.offHeap = offHeap;
+        slots = new long[1 << 10];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    // Create an empty arena that keeps translations and explanations outside the Java heap
+    public static SayingArena offHeap() {
+        return new SayingArena(true);
+    }
+
+    // Create a saying whose text is kept in the arena. The Hawaiian words of the sayings in a
+    // database differ, so only the translation and the explanation are looked up to share them.
+    public Saying compact(String hawaiianWords, String englishTranslation, String sayingExplanation) {
+        if (offHeap) {
+            synchronized (this) {
+                long english = share(englishTranslation);
+                long explanation = share(sayingExplanation);
+                return new OffHeapSaying(hawaiianWords, chunks[chunk(english)], offset(english),
+                        chunks[chunk(explanation)], offset(explanation));
+            }
+        }
+        String key = Saying.collationKey(hawaiianWords);
+        synchronized (this) {
+            long hawaiian = add(hawaiianWords.getBytes(StandardCharsets.UTF_8));
+            long english = share(englishTranslation);
+            long explanation = share(sayingExplanation);
+            return new CompactSaying(key, chunks[chunk(hawaiian)], offset(hawaiian), chunks[chunk(english)],
+                    offset(english), chunks[chunk(explanation)], offset(explanation));
+        }
+    }
+
+    // Create a copy of a saying whose text is kept in the arena
+    public Saying compact(Saying saying) {
+        return compact(saying.getHawaiianWords(), saying.getEnglishTranslation(), saying.getExplanation());
+    }
+
+    // Get the number of translations and explanations kept once for all the sayings that share them
+    public synchronized int sharedTexts() {
+        return distinct;
+    }
+
+    // Get the number of bytes of text kept in the arena (off the heap for an off-heap arena),
+    // with their lengths
+    public synchronized long bytesUsed() {
+        return bytes;
+    }
+
+    // find the text in the hash table or add it to the arena and the table, returning its place
+    private long share(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        int mask = slots.length - 1;
+        int slot = hash(utf8) & mask;
+        while (slots[slot] != EMPTY) {
+            long place = slots[slot];
+            if (sameText(chunks[chunk(place)], offset(place), utf8)) {
+                return place;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long place = add(utf8);
+        slots[slot] = place;
+        // grow the table once it is two thirds full
+        if (++distinct * 3 > slots.length * 2) {
+            grow();
+        }
+        return place;
+    }
+
+    // copy the length and the bytes of a text into the last chunk, starting a new one if they
+    // do not fit, and return the place of the text: its chunk in the high 32 bits and its
+    // offset in the chunk in the low 32 bits
+    private long add(byte[] utf8) {
+        int size = lengthSize(utf8.length) + utf8.length;
+        if (chunkCount == 0 || position + size > chunks[chunkCount - 1].capacity()) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            }
+            int capacity = Math.max(CHUNK_SIZE, size);
+            chunks[chunkCount++] = offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+            position = 0;
+        }
+        int chunk = chunkCount - 1;
+        int offset = position;
+        position = writeLength(chunks[chunk], position, utf8.length);
+        chunks[chunk].put(position, utf8);
+        position += utf8.length;
+        bytes += size;
+        return (long) chunk << 32 | offset;
+    }
+
+    // get the chunk of a place
+    private static int chunk(long place) {
+        return (int) (place >>> 32);
+    }
+
+    // get the offset of a place
+    private static int offset(long place) {
+        return (int) place;
+    }
+
+    // double the hash table, hashing the texts again from their bytes in the arena
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        Arrays.fill(slots, EMPTY);
+        int mask = slots.length - 1;
+        for (long place : old) {
+            if (place != EMPTY) {
+                ByteBuffer chunk = chunks[chunk(place)];
+                int length = readLength(chunk, offset(place));
+                int start = offset(place) + lengthSize(length);
+                int slot = hash(chunk, start, start + length) & mask;
+                while (slots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = place;
+            }
+        }
+    }
+
+    // hash UTF-8 bytes, spreading the bits so the low ones can pick a slot
+    private static int hash(byte[] utf8) {
+        return hash(ByteBuffer.wrap(utf8), 0, utf8.length);
+    }
+
+    // hash the bytes from start (inclusive) to end (exclusive) of a buffer
+    private static int hash(ByteBuffer bytes, int start, int end) {
+        int h = 1;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + bytes.get(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // check whether the text stored at an offset of a chunk has the given bytes
+    private static boolean sameText(ByteBuffer chunk, int offset, byte[] utf8) {
+        if (readLength(chunk, offset) != utf8.length) {
+            return false;
+        }
+        int start = offset + lengthSize(utf8.length);
+        return chunk.slice(start, utf8.length).equals(ByteBuffer.wrap(utf8));
+    }
+
+    // number of bytes the length of a text takes: seven bits per byte
+    private static int lengthSize(int length) {
+        int size = 1;
+        while ((length >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    // write a length seven bits at a time, low bits first, and return the position after it
+    private static int writeLength(ByteBuffer chunk, int position, int length) {
+        while ((length & ~0x7F) != 0) {
+            chunk.put(position++, (byte) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        chunk.put(position++, (byte) length);
+        return position;
+    }
+
+    // read the length of the text stored at an offset of a chunk
+    private static int readLength(ByteBuffer chunk, int offset) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = chunk.get(offset++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return length;
+    }
+
+    // decode the text stored at an offset of a chunk
+    static String decode(ByteBuffer chunk, int offset) {
+        int length = readLength(chunk, offset);
+        int start = offset + lengthSize(length);
+        if (chunk.hasArray()) {
+            return new String(chunk.array(), chunk.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        return SayingsSnapshot.decode(chunk, start, length);
+    }
+
+    // a saying whose text is kept in an arena and decoded when it is read
+    private static final class CompactSaying extends Saying {
+        private final ByteBuffer hawaiianChunk; // chunk holding the Hawaiian words
+        private final ByteBuffer englishChunk; // chunk holding the English translation
+        private final ByteBuffer explanationChunk; // chunk holding the explanation
+        private final int hawaiianOffset; // where the Hawaiian words start in their chunk
+        private final int englishOffset; // where the English translation starts in its chunk
+        private final int explanationOffset; // where the explanation starts in its chunk
+
+        CompactSaying(String collationKey, ByteBuffer hawaiianChunk, int hawaiianOffset, ByteBuffer englishChunk,
+                int englishOffset, ByteBuffer explanationChunk, int explanationOffset) {
+            super(collationKey);
+            this.hawaiianChunk = hawaiianChunk;
+            this.hawaiianOffset = hawaiianOffset;
+            this.englishChunk = englishChunk;
+            this.englishOffset = englishOffset;
+            this.explanationChunk = explanationChunk;
+            this.explanationOffset = explanationOffset;
+        }
+
+        @Override
+        public String getHawaiianWords() {
+            return decode(hawaiianChunk, hawaiianOffset);
+        }
+
+        @Override
+        public String getEnglishTranslation() {
+            return decode(englishChunk, englishOffset);
+        }
+
+        @Override
+        public String getExplanation() {
+            return decode(explanationChunk, explanationOffset);
+        }
+    }
+
+    // a saying whose Hawaiian words are a String and whose other text is kept off the heap
+    private static final class OffHeapSaying extends Saying {
+        private final ByteBuffer englishChunk; // direct buffer holding the English translation
+        private final ByteBuffer explanationChunk; // direct buffer holding the explanation
+        private final int englishOffset; // where the English translation starts in its buffer
+        private final int explanationOffset; // where the explanation starts in its buffer
+
+        OffHeapSaying(String hawaiianWords, ByteBuffer englishChunk, int englishOffset, ByteBuffer explanationChunk,
+                int explanationOffset) {
+            super(hawaiianWords, null, null);
+            this.englishChunk = englishChunk;
+            this.englishOffset = englishOffset;
+            this.explanationChunk = explanationChunk;
+            this.explanationOffset = explanationOffset;
+        }
+
+        @Override
+        public String getEnglishTranslation() {
+            return decode(englishChunk, englishOffset);
+        }
+
+        @Override
+        public String getExplanation() {
+            return decode(explanationChunk, explanationOffset);
+        }
+    }
+}
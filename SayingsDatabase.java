@@ -1,7 +1,19 @@
 package sayingsDatabase;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 /**
  * AVL Tree implementation for the Sayings Database. It stores Hawaiian sayings,
@@ -10,283 +22,847 @@ import java.util.List;
  * and finding
  * predecessors/successors alphabetically.
  * 
+ * The sayings are kept in an OrderedStore keyed by their collation keys: an
+ * AVL tree by default, or a B+-tree with wide nodes when the database is
+ * created with Storage.B_PLUS_TREE. Neither engine changes a node once it is
+ * published, so every read works on the snapshot it started with.
+ * ConcurrentSayingsDatabase uses this to let readers run without locking.
+ * 
  * @author Binh Tran and Ellie Ishii
  *
  */
-public class SayingsDatabase {
-    // internal node class that represents a node in the AVL Tree
-    private class Node {
-        Saying saying; // the saying that is stored in the node
-        Node left, right; // left and right children
-        int height; // height of the node in the tree
+public class SayingsDatabase implements Iterable<Saying> {
+    // storage engines the sayings can be kept in
+    public enum Storage {
+        AVL_TREE, // binary tree with one node per saying
+        B_PLUS_TREE // wide nodes with their keys in contiguous arrays, fewer cache misses per lookup
+    }
+
+    // ways a word search can match the text of a saying
+    public enum Match {
+        SUBSTRING, // the text contains the query anywhere, even inside a longer word
+        PHRASE, // the words of the query appear as whole words, in order and next to each other
+        PHRASE_IGNORING_KAHAKO // like PHRASE, but "malama" also matches "mālama"
+    }
+
+    // sayings in alphabetical order of their collation keys
+    private final OrderedStore<String, Saying> tree;
+
+    // number of sayings from which scans of the whole tree run in parallel
+    static final int PARALLEL_SCAN_SIZE = 1 << 14;
+
+    // alphabetical order of the sayings in the tree (by their collation keys)
+    private static final Comparator<Saying> SAYING_ORDER = Comparator.comparing(Saying::getCollationKey);
+
+    // least number of deleted sayings whose document numbers are worth compacting away
+    static final int COMPACTION_MIN_DELETED = 64;
+
+    // the word indexes and the table of sayings by document number, published together so a
+    // reader never looks a number from one set of indexes up in the table of another
+    private static final class Indexes {
+        final Map<BooleanQuery.Field, WordIndex> fields; // inverted index of each field, never changed once published
+        final Postings documents; // sayings by document number, or null when there are none
+        final int count; // number of document numbers given out
+        final int deleted; // number of them whose saying has been deleted since
+
+        // constructor for empty indexes, with or without the index of the explanations
+        Indexes(boolean explained) {
+            fields = new EnumMap<>(BooleanQuery.Field.class);
+            fields.put(BooleanQuery.Field.HAWAIIAN, new WordIndex(Saying::getHawaiianWords, SAYING_ORDER));
+            fields.put(BooleanQuery.Field.ENGLISH, new WordIndex(Saying::getEnglishTranslation, SAYING_ORDER));
+            if (explained) {
+                fields.put(BooleanQuery.Field.EXPLANATION, new WordIndex(Saying::getExplanation, SAYING_ORDER));
+            }
+            documents = null;
+            count = 0;
+            deleted = 0;
+        }
+
+        // constructor for the given word indexes with a table of documents
+        Indexes(Map<BooleanQuery.Field, WordIndex> fields, Postings documents, int deleted) {
+            this.fields = fields;
+            this.documents = documents;
+            this.count = documents == null ? 0 : documents.count();
+            this.deleted = deleted;
+        }
 
-        // constructor for a node that initializes the saying and sets height to 1
-        Node(Saying saying) {
-            this.saying = saying;
-            height = 1;
+        // check whether the explanations are indexed yet
+        boolean explained() {
+            return fields.containsKey(BooleanQuery.Field.EXPLANATION);
+        }
+
+        // check whether a document number belongs to a saying that had not been deleted when
+        // the table was published; numbers given out since are not in the table yet
+        boolean live(int doc) {
+            return saying(doc) != null;
+        }
+
+        // get the saying of a live document, or null if it is not live; a deletion can clear
+        // the entry at any time, so callers read it once and use what they read
+        Saying saying(int doc) {
+            return doc < count ? documents.get(doc) : null;
         }
     }
 
-    private Node root; // root of the AVL tree
+    // sayings by document number (the order they were indexed in) with the inverted indexes
+    // from normalized words to them; the entry of a deleted saying is cleared, and its number
+    // is not given out again until the indexes are compacted
+    private volatile Indexes indexes = new Indexes(true);
+
+    // held by the writer while it changes the indexes, and by a reader building deferred
+    // indexes, which is the only time a reader changes them
+    private final Object indexLock = new Object();
+
+    // whether the indexes, the completion trie and the typo tree are left to be built from the
+    // tree on first use, as they are after loading a snapshot (only cleared under indexLock)
+    private volatile boolean deferred;
+
+    // document number of each saying in the tree (guarded by indexLock)
+    private final Map<Saying, Integer> docNumbers = new IdentityHashMap<>();
+
+    // trie over the folded words of both fields for prefix completion
+    private volatile PrefixTrie completions = new PrefixTrie(SAYING_ORDER);
+
+    // tree of the folded Hawaiian words for lookups that tolerate typos
+    private volatile BKTree similar = new BKTree(SAYING_ORDER);
 
-    // Insert a new saying into the AVL tree
-    public void insert(Saying saying) {
-        root = insert(root, saying);
+    // recent results of word searches and predecessor/successor lookups, or null when not cached
+    private volatile ResultCache cache;
+
+    // latencies and tree shape measured while the database runs, or null when not measured
+    private volatile SayingsMetrics metrics;
+
+    // constructor for an empty database kept in an AVL tree
+    public SayingsDatabase() {
+        this(Storage.AVL_TREE);
     }
 
-    // helper function to insert a new saying in the tree and maintain AVL balance 
-    private Node insert(Node node, Saying saying) {
-        // if the current node is null, create a new node with the saying
-        if (node == null) {
-            return new Node(saying);
+    // constructor for an empty database kept in the given storage engine
+    public SayingsDatabase(Storage storage) {
+        if (storage == Storage.B_PLUS_TREE) {
+            tree = new BPlusTree<>(Saying::getCollationKey, Comparator.naturalOrder());
+        } else {
+            tree = new OrderedTree<>(Saying::getCollationKey, Comparator.naturalOrder());
         }
+    }
 
-        // compare the new saying with the current node's saying
-        if (saying.getHawaiianWords().compareToIgnoreCase(node.saying.getHawaiianWords()) < 0) {
-            // insert in the left subtree if the new saying is smaller
-            node.left = insert(node.left, saying);
-        } else if (saying.getHawaiianWords().compareToIgnoreCase(node.saying.getHawaiianWords()) > 0) {
-            // insert in the right subtree if the new saying is larger
-            node.right = insert(node.right, saying);
-        } else {
-            return node; // if there is a duplicate saying, do nothing
+    // Insert a new saying into the AVL tree, returning false if it was a duplicate
+    public boolean insert(Saying saying) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            indexed(); // so a deferred build does not index the saying a second time
+            // if there is a duplicate saying, do nothing
+            if (!tree.add(saying)) {
+                return false;
+            }
+
+            // add the words of the new saying to the word indexes
+            index(saying);
+            invalidate(saying);
+            return true;
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.INSERT, start);
         }
+    }
 
-        // Update height of the node
-        node.height = 1 + Math.max(height(node.left), height(node.right));
-        // balance the tree after insertion
-        return balance(node);
+    // Insert many sayings at once and return how many of them were new
+    public int bulkLoad(Collection<Saying> sayings) {
+        return buildFrom(sayings.iterator());
     }
 
-    // helper method to return the height of a node
-    private int height(Node node) {
-        return node == null ? 0 : node.height;
+    // Insert every saying from the iterator and return how many of them were new. The input
+    // is sorted once and duplicates are dropped the same way insert drops them (the saying
+    // that was there first is kept). The tree is then rebuilt bottom-up, so loading into an
+    // empty database is a linear build with no rotations or splits.
+    public int buildFrom(Iterator<Saying> sayings) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            List<Saying> incoming = new ArrayList<>();
+            while (sayings.hasNext()) {
+                incoming.add(sayings.next());
+            }
+            List<Saying> added = addAll(incoming);
+            ResultCache results = cache;
+            if (results != null && !added.isEmpty()) {
+                results.clear(); // too many changes to check the cached results one by one
+            }
+            return added.size();
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.BULK_LOAD, start);
+        }
     }
 
-    // calculate the balance factor of a node (left height - right height)
-    private int getBalance(Node node) {
-        return node == null ? 0 : height(node.left) - height(node.right);
+    // add sayings to the tree and then their words to the indexes, unless the indexes are
+    // deferred: they will be built from the tree, and no reader can start building them meanwhile
+    private List<Saying> addAll(List<Saying> incoming) {
+        synchronized (indexLock) {
+            if (deferred) {
+                return tree.addAll(incoming);
+            }
+        }
+        List<Saying> added = tree.addAll(incoming);
+        for (Saying saying : added) {
+            index(saying);
+        }
+        return added;
     }
 
-    // Balance the AVL tree after an insertion or deletion
-    private Node balance(Node node) {
-        int balance = getBalance(node);
+    // number the saying and add its words to the indexes, once it is in the tree; the number
+    // is published first, so every number in an index belongs to a published saying
+    private void index(Saying saying) {
+        synchronized (indexLock) {
+            Indexes current = indexes;
+            Postings docs = current.documents;
+            int doc = current.count;
+            indexes = new Indexes(current.fields, docs == null ? new Postings(saying) : docs.append(saying),
+                    current.deleted);
+            docNumbers.put(saying, doc);
+            for (WordIndex index : current.fields.values()) {
+                index.add(saying, doc);
+            }
+        }
+        completions.add(saying);
+        similar.add(saying);
+    }
 
-        // Left heavy case
-        if (balance > 1) {
-            // if the left child is right heavy, perform a left rotation on the left child
-            if (getBalance(node.left) < 0) {
-                node.left = rotateLeft(node.left);
+    // Delete the saying with the given Hawaiian words (case insensitive), returning false if
+    // there is none. The tree is rebalanced on the way back up in O(log n), and the indexes are
+    // updated in place rather than rebuilt.
+    public boolean delete(String hawaiianWords) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            indexed();
+            Saying saying = tree.remove(Saying.collationKey(hawaiianWords));
+            if (saying == null) {
+                return false;
             }
-            // right rotation to balance the tree
-            return rotateRight(node);
+            unindex(saying);
+            invalidate(saying);
+            compactIfNeeded();
+            return true;
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.DELETE, start);
         }
+    }
 
-        // Right heavy case
-        if (balance < -1) {
-            // if the right child is left heavy, perform a right rotation on the right child
-            if (getBalance(node.right) > 0) {
-                node.right = rotateRight(node.right);
+    // Replace the saying with the given Hawaiian words by a new saying, which may have different
+    // Hawaiian words. Returns false, changing nothing, if there is no saying with the given words
+    // or if another saying already has the new saying's words.
+    public boolean update(String hawaiianWords, Saying newSaying) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            indexed();
+            Saying old = tree.get(Saying.collationKey(hawaiianWords));
+            if (old == null) {
+                return false;
             }
-            // left rotation to balance the tree
-            return rotateLeft(node);
+            Saying other = tree.get(newSaying.getCollationKey());
+            if (other != null && other != old) {
+                return false;
+            }
+            // the tree and indexes are changed directly, so a subclass sees the update as one operation
+            unindex(tree.remove(old.getCollationKey()));
+            tree.add(newSaying);
+            index(newSaying);
+            invalidate(old);
+            invalidate(newSaying);
+            compactIfNeeded();
+            return true;
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.UPDATE, start);
         }
-        // return the balanced node
-        return node;
     }
 
-    // perform a right rotation on a subtree
-    private Node rotateRight(Node y) {
-        Node x = y.left; // set the left child as the new root of the subtree
-        Node T2 = x.right; // temporarily store the right subtree of x
+    // take a saying that has left the tree out of the indexes. Its document number stops being
+    // live, which hides it from the word indexes without touching their posting lists.
+    private void unindex(Saying saying) {
+        synchronized (indexLock) {
+            Indexes current = indexes;
+            int doc = docNumbers.remove(saying);
+            for (WordIndex index : current.fields.values()) {
+                index.remove(doc);
+            }
+            indexes = new Indexes(current.fields, current.documents.clear(doc), current.deleted + 1);
+        }
+        completions.remove(saying);
+        similar.remove(saying);
+    }
 
-        // perform the rotations
-        x.right = y;
-        y.left = T2;
+    // compact the indexes once at least a quarter of the document numbers (and at least
+    // COMPACTION_MIN_DELETED of them) belong to deleted sayings, so deletions cost amortized
+    // O(1) rebuilt entries each and the indexes stay within a third of their live size
+    private void compactIfNeeded() {
+        Indexes current = indexes;
+        if (current.deleted >= COMPACTION_MIN_DELETED && 4L * current.deleted >= current.count) {
+            compact();
+        }
+    }
 
-        // update heights of the rotated nodes
-        y.height = Math.max(height(y.left), height(y.right)) + 1;
-        x.height = Math.max(height(x.left), height(x.right)) + 1;
+    // number the sayings in the tree afresh, alphabetically, and rebuild every index from them,
+    // which frees the postings, field lengths and table entries of the deleted sayings. The new
+    // indexes are built aside and then published, so readers keep using the old ones until then.
+    private void compact() {
+        PrefixTrie trie = new PrefixTrie(SAYING_ORDER);
+        BKTree typos = new BKTree(SAYING_ORDER);
+        synchronized (indexLock) {
+            Indexes rebuilt = new Indexes(indexes.explained());
+            Postings docs = null;
+            docNumbers.clear();
+            for (Saying saying : tree.toList()) {
+                int doc = docs == null ? 0 : docs.count();
+                docs = docs == null ? new Postings(saying) : docs.append(saying);
+                docNumbers.put(saying, doc);
+                for (WordIndex index : rebuilt.fields.values()) {
+                    index.add(saying, doc);
+                }
+                trie.add(saying);
+                typos.add(saying);
+            }
+            indexes = new Indexes(rebuilt.fields, docs, 0);
+        }
+        completions = trie;
+        similar = typos;
+    }
 
-        // return the new root of the subtree
-        return x;
+    // leave the indexes unbuilt until something needs them, so loading a snapshot only builds
+    // the tree: the word indexes, the completion trie and the typo tree are built from it on
+    // first use, and the explanations, which stay in the snapshot until read, are not indexed
+    // until a query or search needs them; only for a database that has not indexed any sayings yet
+    void deferIndexes() {
+        synchronized (indexLock) {
+            if (indexes.count > 0) {
+                throw new IllegalStateException("The database has already indexed sayings.");
+            }
+            indexes = new Indexes(false);
+            deferred = true;
+        }
     }
 
-    // perform a left rotation on a subtree
-    private Node rotateLeft(Node x) {
-        Node y = x.right; // Set the right child as the new root of the subtree
-        Node T2 = y.left; // Temporarily store the left subtree of y
+    // get the indexes, building them (and the completion trie and typo tree) from the tree
+    // first if they were deferred
+    private Indexes indexed() {
+        if (deferred) {
+            synchronized (indexLock) {
+                if (deferred) {
+                    compact();
+                    deferred = false;
+                }
+            }
+        }
+        return indexes;
+    }
 
-        // perform rotations
-        y.left = x;
-        x.right = T2;
+    // get the indexes with the index of the explanations, building it first if it was deferred
+    private Indexes explained() {
+        Indexes current = indexed();
+        if (current.explained()) {
+            return current;
+        }
+        synchronized (indexLock) {
+            current = indexes;
+            if (!current.explained()) {
+                WordIndex explanations = new WordIndex(Saying::getExplanation, SAYING_ORDER);
+                for (int doc = 0; doc < current.count; doc++) {
+                    Saying saying = current.documents.get(doc);
+                    if (saying != null) { // not deleted
+                        explanations.add(saying, doc);
+                    }
+                }
+                Map<BooleanQuery.Field, WordIndex> fields = new EnumMap<>(current.fields);
+                fields.put(BooleanQuery.Field.EXPLANATION, explanations);
+                current = new Indexes(fields, current.documents, current.deleted);
+                indexes = current;
+            }
+            return current;
+        }
+    }
 
-        // Update heights of the rotated nodes
-        x.height = Math.max(height(x.left), height(x.right)) + 1;
-        y.height = Math.max(height(y.left), height(y.right)) + 1;
+    // remove the cached results a saying that was added or removed can change
+    private void invalidate(Saying saying) {
+        ResultCache results = cache;
+        if (results != null) {
+            results.invalidate(saying);
+        }
+    }
 
-        // Return the new root of the subtree
-        return y;
+    // Keep the results of up to maxEntries recent word searches (withWord, withWordInEnglish
+    // and MeHua) and predecessor/successor lookups, evicting the least recently used. A change
+    // only removes the results it can affect. Replaces any cache kept before.
+    public void enableResultCache(int maxEntries) {
+        cache = new ResultCache(maxEntries);
+    }
+
+    // Stop caching results
+    public void disableResultCache() {
+        cache = null;
+    }
+
+    // Get the result cache, with its hit, miss and eviction counters, or null if results are not cached
+    public ResultCache getResultCache() {
+        return cache;
+    }
+
+    // Measure the latency of every operation, the shape of the tree and the nodes each lookup
+    // visits, starting from now, and return the metrics. Replaces any metrics kept before.
+    public SayingsMetrics enableMetrics() {
+        SayingsMetrics measured = new SayingsMetrics(tree);
+        tree.visits = measured.getVisits();
+        metrics = measured;
+        return measured;
+    }
+
+    // Stop measuring the database
+    public void disableMetrics() {
+        metrics = null;
+        tree.visits = null;
+    }
+
+    // Get the metrics of the database, or null if it is not measured
+    public SayingsMetrics getMetrics() {
+        return metrics;
     }
 
     // Retrieve all sayings in the database in sorted order (in-order traversal)
     public List<Saying> getAllSayings() {
-        List<Saying> sayingsList = new ArrayList<>();
-        inOrderTraversal(root, sayingsList);
-        return sayingsList;
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return tree.toList();
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.GET_ALL_SAYINGS, start);
+        }
     }
 
-    // get sayings in lexicographical order
-    private void inOrderTraversal(Node node, List<Saying> sayingsList) {
-        if (node != null) {
-            inOrderTraversal(node.left, sayingsList);
-            sayingsList.add(node.saying);
-            inOrderTraversal(node.right, sayingsList);
+    // Get the number of sayings in the database
+    public int size() {
+        return tree.size();
+    }
+
+    // Get the number of sayings that come before the given Hawaiian words alphabetically,
+    // which is the position of the saying if it is in the database (O(log n))
+    public int rank(String hawaiianWords) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return tree.rank(Saying.collationKey(hawaiianWords));
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.RANK, start);
         }
     }
 
-    // Check if a saying is a member of the database (case insensitive)
-    public boolean member(String hawaiianWords) {
-        return search(root, hawaiianWords.toLowerCase()) != null;
+    // Get the saying at position k (0-based) in alphabetical order, or null if there is none (O(log n))
+    public Saying select(int k) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return tree.select(k);
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.SELECT, start);
+        }
     }
 
-    // Search for a node containing the given Hawaiian words (case insensitive)
-    private Node search(Node node, String hawaiianWords) {
-        if (node == null) {
-            return null;
+    // Get up to limit sayings starting at position offset in alphabetical order. Jumping to the
+    // offset costs O(log n), so a page costs O(log n + limit) however deep into the list it is.
+    public List<Saying> page(int offset, int limit) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return collectPage(offset, limit);
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.PAGE, start);
         }
+    }
 
-        // case insensitive comparison with the current node
-        if (node.saying.getHawaiianWords().equalsIgnoreCase(hawaiianWords)) {
-            return node;
+    // collect a page of sayings for page and complete
+    private List<Saying> collectPage(int offset, int limit) {
+        List<Saying> page = new ArrayList<>(Math.max(0, Math.min(limit, size() - offset)));
+        Iterator<Saying> sayings = tree.iteratorAt(offset);
+        while (page.size() < limit && sayings.hasNext()) {
+            page.add(sayings.next());
         }
+        OrderedStore.finished(sayings);
+        return page;
+    }
 
-        // recursively search in the left or right subtree
-        if (hawaiianWords.compareToIgnoreCase(node.saying.getHawaiianWords()) < 0) {
-            return search(node.left, hawaiianWords);
-        } else {
-            return search(node.right, hawaiianWords);
+    // Iterate over all sayings in alphabetical order without copying them into a list
+    @Override
+    public Iterator<Saying> iterator() {
+        return tree.iterator();
+    }
+
+    // Iterate over the sayings from position offset (0-based) on in alphabetical order; the
+    // first saying is found in O(log n) and each next one in amortized O(1)
+    public Iterator<Saying> iteratorAt(int offset) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return tree.iteratorAt(offset);
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.RANGE, start);
+        }
+    }
+
+    // Split the sayings for a stream, in alphabetical order
+    @Override
+    public Spliterator<Saying> spliterator() {
+        return tree.spliterator();
+    }
+
+    // View of the sayings from fromHawaiianWords (inclusive) to toHawaiianWords (exclusive).
+    // Each iteration walks the current tree lazily, so reading a page of k sayings costs
+    // O(log n + k) and uses O(log n) extra memory.
+    public Iterable<Saying> range(String fromHawaiianWords, String toHawaiianWords) {
+        String from = Saying.collationKey(fromHawaiianWords);
+        String to = Saying.collationKey(toHawaiianWords);
+        return () -> rangeIterator(from, to);
+    }
+
+    // View of the sayings before toHawaiianWords (exclusive)
+    public Iterable<Saying> headSet(String toHawaiianWords) {
+        String to = Saying.collationKey(toHawaiianWords);
+        return () -> rangeIterator(null, to);
+    }
+
+    // View of the sayings from fromHawaiianWords (inclusive) on
+    public Iterable<Saying> tailSet(String fromHawaiianWords) {
+        String from = Saying.collationKey(fromHawaiianWords);
+        return () -> rangeIterator(from, null);
+    }
+
+    // start iterating over the sayings with collation keys in [from, to) for a view
+    private Iterator<Saying> rangeIterator(String from, String to) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return tree.iterator(from, to);
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.RANGE, start);
         }
     }
 
-    // Find the first saying (alphabetically)
+    // Check if a saying is a member of the database (case insensitive)
+    public boolean member(String hawaiianWords) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return tree.get(Saying.collationKey(hawaiianWords)) != null;
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.MEMBER, start);
+        }
+    }
+
+    // Find the sayings whose Hawaiian words are within maxDistance typos (letters added, removed
+    // or changed) of the given words, closest first. Case, the ʻokina and the kahakō are
+    // ignored, so "aina" finds "ʻĀina" at distance 0 and "aloah" finds "aloha" at distance 2.
+    public List<Saying> fuzzyMatch(String hawaiianWords, int maxDistance) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            indexed();
+            return similar.find(Saying.fold(hawaiianWords), maxDistance);
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.FUZZY_MATCH, start);
+        }
+    }
+
+    // Find the first saying (alphabetically), or null if the database is empty
     public Saying first() {
-        return minValueNode(root).saying;
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return tree.first();
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.FIRST, start);
+        }
     }
 
-    // Find the last saying (alphabetically)
+    // Find the last saying (alphabetically), or null if the database is empty
     public Saying last() {
-        return maxValueNode(root).saying;
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return tree.last();
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.LAST, start);
+        }
     }
 
-    // Get the node with the minimum value (leftmost node)
-    private Node minValueNode(Node node) {
-        Node current = node;
-        while (current.left != null) {
-            current = current.left;
+    // Find the predecessor (largest saying smaller than the target)
+    public Saying predecessor(String hawaiianWords) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            ResultCache results = cache;
+            if (results != null) {
+                return results.saying(ResultCache.Kind.PREDECESSOR, hawaiianWords,
+                        () -> tree.lower(Saying.collationKey(hawaiianWords)));
+            }
+            return tree.lower(Saying.collationKey(hawaiianWords));
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.PREDECESSOR, start);
         }
-        return current;
     }
 
-    // Get the node with the maximum value (rightmost node)
-    private Node maxValueNode(Node node) {
-        Node current = node;
-        while (current.right != null) {
-            current = current.right;
+    // Find the successor (smallest saying greater than the target)
+    public Saying successor(String hawaiianWords) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            ResultCache results = cache;
+            if (results != null) {
+                return results.saying(ResultCache.Kind.SUCCESSOR, hawaiianWords,
+                        () -> tree.higher(Saying.collationKey(hawaiianWords)));
+            }
+            return tree.higher(Saying.collationKey(hawaiianWords));
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.SUCCESSOR, start);
         }
-        return current;
     }
 
-    // Find the predecessor (largest node smaller than the target)
-    public Saying predecessor(String hawaiianWords) {
-        Node predecessor = predecessor(root, null, hawaiianWords);
-        return predecessor != null ? predecessor.saying : null;
+    // Save all sayings to a binary snapshot file that loadSnapshot can map back in
+    public void saveSnapshot(Path file) throws IOException {
+        SayingsSnapshot.save(getAllSayings(), file);
+    }
+
+    // Create a database from a snapshot file written by saveSnapshot. The file is memory-mapped
+    // and only the Hawaiian words are decoded, to build the tree; the other text is decoded
+    // when it is read. The word indexes, completions and typo lookups are built on first use,
+    // and the explanations are not indexed until the first search or explanation: query.
+    public static SayingsDatabase loadSnapshot(Path file) throws IOException {
+        return loadSnapshot(file, Storage.AVL_TREE);
+    }
+
+    // Create a database kept in the given storage engine from a snapshot file
+    public static SayingsDatabase loadSnapshot(Path file, Storage storage) throws IOException {
+        SayingsDatabase db = new SayingsDatabase(storage);
+        db.deferIndexes();
+        db.bulkLoad(SayingsSnapshot.load(file));
+        return db;
     }
 
-    // helper method to find the predecessor of a given word
-    private Node predecessor(Node node, Node predecessor, String hawaiianWords) {
-        if (node == null) {
-            return predecessor;
+    // Find sayings containing a specific word in Hawaiian (alphabetical order)
+    public List<Saying> withWord(String word) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            ResultCache results = cache;
+            if (results != null) {
+                return results.sayings(ResultCache.Kind.HAWAIIAN_WORD, word, () -> findWord(word, true));
+            }
+            return findWord(word, true);
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.WITH_WORD, start);
         }
+    }
 
-        // recursively search for the predecessor
-        if (hawaiianWords.compareToIgnoreCase(node.saying.getHawaiianWords()) > 0) {
-            return predecessor(node.right, node, hawaiianWords);
-        } else {
-            return predecessor(node.left, predecessor, hawaiianWords);
+    // Find sayings containing a specific word in English (alphabetical order)
+    public List<Saying> withWordInEnglish(String word) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            ResultCache results = cache;
+            if (results != null) {
+                return results.sayings(ResultCache.Kind.ENGLISH_WORD, word, () -> findWord(word, false));
+            }
+            return findWord(word, false); // Search in English
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.WITH_WORD_IN_ENGLISH, start);
         }
     }
 
-    // Find the successor (smallest node greater than the target)
-    public Saying successor(String hawaiianWords) {
-        Node successor = successor(root, null, hawaiianWords);
-        return successor != null ? successor.saying : null;
+    // Find sayings whose Hawaiian words match the query in the given way (alphabetical order)
+    public List<Saying> withWord(String query, Match match) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return findWord(query, true, match);
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.WITH_WORD, start);
+        }
     }
 
-    // helper method to find the successor of a given word
-    private Node successor(Node node, Node successor, String hawaiianWords) {
-        if (node == null) {
-            return successor;
+    // Find sayings whose English translation matches the query in the given way (alphabetical order)
+    public List<Saying> withWordInEnglish(String query, Match match) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return findWord(query, false, match);
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.WITH_WORD_IN_ENGLISH, start);
         }
+    }
 
-        // recursively search for the successor
-        if (hawaiianWords.compareToIgnoreCase(node.saying.getHawaiianWords()) < 0) {
-            return successor(node.left, node, hawaiianWords);
-        } else {
-            return successor(node.right, successor, hawaiianWords);
+    // answer phrase queries from the word positions in the index, and substring queries by word lookup
+    private List<Saying> findWord(String query, boolean searchInHawaiian, Match match) {
+        if (match == Match.SUBSTRING) {
+            return findWord(query, searchInHawaiian);
         }
+        Indexes current = indexed();
+        WordIndex index = current.fields.get(searchInHawaiian ? BooleanQuery.Field.HAWAIIAN
+                : BooleanQuery.Field.ENGLISH);
+        return sayings(current, new DocCursor.OfArray(index.findPhrase(query, match == Match.PHRASE_IGNORING_KAHAKO)));
     }
 
-    // Find sayings containing a specific word in Hawaiian
-    public List<Saying> withWord(String word) {
-        List<Saying> result = new ArrayList<>();
-        searchByWord(root, word, result, true);
-        return result;
+    // Find sayings matching a boolean query (alphabetical order). Terms match whole words,
+    // ignoring case and the kahakō, in the Hawaiian words or the English translation, and
+    // can be combined with AND, OR, NOT and parentheses, for example "kai AND NOT lepo" or
+    // "water OR wai". A term can be limited to a field with hawaiian:, english: or
+    // explanation:, and text in double quotes matches as a phrase. Throws
+    // IllegalArgumentException if the query is not well formed.
+    public List<Saying> query(String expression) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            BooleanQuery query = BooleanQuery.parse(expression);
+            Indexes current = query.searches(BooleanQuery.Field.EXPLANATION) ? explained() : indexed();
+            return sayings(current, query.cursor(current.fields, current.count));
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.QUERY, start);
+        }
     }
 
-    // Find sayings containing a specific word in English
-    public List<Saying> withWordInEnglish(String word) {
-        List<Saying> result = new ArrayList<>();
-        searchByWord(root, word, result, false); // Search in English
+    // Find the (at most) k sayings most relevant to the words of the query, best first. Each
+    // saying is scored with BM25 over its Hawaiian words, English translation and
+    // explanation, matching whole words while ignoring case and the kahakō, and only the
+    // best k are kept while the matches are scored.
+    public List<Saying> search(String query, int k) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            Indexes current = explained();
+            int[] top = RankedSearch.topDocs(Tokenizer.tokenize(query), current.fields, current.count,
+                    current.count - current.deleted, k, current::live);
+            List<Saying> result = new ArrayList<>(top.length);
+            for (int doc : top) {
+                Saying saying = current.saying(doc);
+                if (saying != null) { // not deleted since it was scored
+                    result.add(saying);
+                }
+            }
+            return result;
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.SEARCH, start);
+        }
+    }
+
+    // look up the sayings of the documents a cursor over the given indexes returns, alphabetically
+    private List<Saying> sayings(Indexes current, DocCursor cursor) {
+        int[] found = cursor.toArray();
+        List<Saying> result = new ArrayList<>(found.length);
+        for (int doc : found) {
+            Saying saying = current.saying(doc);
+            if (saying != null) { // not deleted, nor added after the query started
+                result.add(saying);
+            }
+        }
+        result.sort(SAYING_ORDER);
         return result;
     }
 
-    // Search for sayings containing a specific word (in Hawaiian or English)
-    private void searchByWord(Node node, String word, List<Saying> result, boolean searchInHawaiian) {
-        if (node == null) {
-            return;
+    // look the word up in the index, scanning the tree only if the word has no letters to look up
+    private List<Saying> findWord(String word, boolean searchInHawaiian) {
+        Indexes current = indexed();
+        WordIndex index = current.fields.get(searchInHawaiian ? BooleanQuery.Field.HAWAIIAN
+                : BooleanQuery.Field.ENGLISH);
+        List<Saying> result = index.find(word, current::live);
+        if (result == null) {
+            result = searchByWord(word, searchInHawaiian);
         }
+        return result;
+    }
 
-        // Determine the text to search based on the language specified
-        String textToSearch = searchInHawaiian ? node.saying.getHawaiianWords() : node.saying.getEnglishTranslation();
-        // Check if the text contains the specified word, case insensitive
-        if (textToSearch.toLowerCase().contains(word.toLowerCase())) {
-            result.add(node.saying);
+    // Search every saying for a specific word (in Hawaiian or English)
+    private List<Saying> searchByWord(String word, boolean searchInHawaiian) {
+        TextMatcher matcher = new TextMatcher(word); // lowercases the word once for the whole scan
+        return scan(saying -> {
+            // Determine the text to search based on the language specified
+            String textToSearch = searchInHawaiian ? saying.getHawaiianWords() : saying.getEnglishTranslation();
+            // Check if the text contains the specified word, case insensitive
+            return matcher.matches(textToSearch);
+        });
+    }
+
+    // Find sayings whose Hawaiian words, English translation or explanation contain the text,
+    // ignoring case (alphabetical order). No index is used, so any text can be found, even
+    // across words, but every saying is visited: on all cores for large databases.
+    public List<Saying> withText(String text) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            TextMatcher matcher = new TextMatcher(text);
+            return scan(saying -> matcher.matches(saying.getHawaiianWords())
+                    || matcher.matches(saying.getEnglishTranslation()) || matcher.matches(saying.getExplanation()));
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.WITH_TEXT, start);
         }
+    }
 
-        // Recursively search left and right subtrees
-        searchByWord(node.left, word, result, searchInHawaiian);
-        searchByWord(node.right, word, result, searchInHawaiian);
+    // Find the sayings that match a predicate (alphabetical order). Databases of at least
+    // PARALLEL_SCAN_SIZE sayings are scanned in parallel: the tree is split by position into
+    // parts of equal size, the parts are tested on the common ForkJoinPool, and the matches
+    // are joined back in order. The predicate must be safe to call from several threads.
+    public List<Saying> filter(Predicate<? super Saying> predicate) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            return scan(predicate);
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.FILTER, start);
+        }
     }
 
-    // Method to find sayings containing a specific Hawaiian word
-    public List<Saying> MeHua(String word) {
-        List<Saying> results = new ArrayList<>();
-        searchMeHua(root, word.toLowerCase(), results);
-        return results;
+    // collect the sayings that match a predicate for filter, withText and word searches
+    private List<Saying> scan(Predicate<? super Saying> predicate) {
+        boolean parallel = tree.size() >= PARALLEL_SCAN_SIZE;
+        return StreamSupport.stream(tree.spliterator(), parallel).filter(predicate).collect(Collectors.toList());
     }
 
-    // helper method to search for a specific Hawaiian word
-    private void searchMeHua(Node node, String word, List<Saying> results) {
-        if (node != null) {
-            // Check the current saying for the word
-            if (node.saying.getHawaiianWords().toLowerCase().contains(word)) {
-                results.add(node.saying);
+    // Complete what a user has typed so far, returning up to limit sayings alphabetically.
+    // A single word (or part of one) matches sayings with a Hawaiian or English word that
+    // starts with it; longer input matches sayings whose Hawaiian words start with it. Case,
+    // the ʻokina and the kahakō are ignored, so "aina" completes to "ʻāina".
+    public List<Saying> complete(String prefix, int limit) {
+        SayingsMetrics measured = metrics;
+        long start = SayingsMetrics.start(measured);
+        try {
+            String folded = Saying.fold(prefix).trim();
+            boolean singleWord = true;
+            for (int i = 0; i < folded.length() && singleWord; i++) {
+                singleWord = WordIndex.isWordChar(folded.charAt(i));
+            }
+            if (singleWord) {
+                if (folded.isEmpty()) {
+                    return collectPage(0, limit);
+                }
+                indexed();
+                return completions.complete(folded, limit,
+                        saying -> tree.get(saying.getCollationKey()) == saying);
             }
 
-            // recursively search the left and right subtrees
-            searchMeHua(node.left, word, results);
-            searchMeHua(node.right, word, results);
+            // the first level of the collation key is the folded text, so the matching
+            // phrases are the ones right after the prefix in the tree
+            List<Saying> result = new ArrayList<>();
+            Iterator<Saying> sayings = tree.iterator(folded, null);
+            while (result.size() < limit && sayings.hasNext()) {
+                Saying saying = sayings.next();
+                if (!saying.getCollationKey().startsWith(folded)) {
+                    break;
+                }
+                result.add(saying);
+            }
+            OrderedStore.finished(sayings);
+            return result;
+        } finally {
+            SayingsMetrics.stop(measured, SayingsMetrics.Operation.COMPLETE, start);
         }
     }
+
+    // Method to find sayings containing a specific Hawaiian word
+    public List<Saying> MeHua(String word) {
+        return withWord(word);
+    }
 }
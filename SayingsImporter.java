@@ -0,0 +1,463 @@
+package sayingsDatabase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The SayingsImporter class streams sayings from large tab-separated,
+ * comma-separated or JSON-lines files into a SayingsDatabase. Records are
+ * read one at a time through a buffered NIO reader and handed to the
+ * database in batches, so memory stays bounded by the batch size no matter
+ * how large the file is. Rows that cannot be turned into a saying and
+ * sayings that are already in the database are counted in a Report.
+ *
+ * Each record holds the Hawaiian words, the English translation and an
+ * optional explanation. Delimited files list them in that order and may
+ * start with a header row; JSON lines use the keys "hawaiian", "english"
+ * and "explanation".
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+public class SayingsImporter {
+    // supported file formats
+    public enum Format {
+        TSV, CSV, JSONL;
+
+        // guess the format of a file from its extension (tab-separated if unknown)
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            } else if (name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")) {
+                return JSONL;
+            }
+            return TSV;
+        }
+    }
+
+    /**
+     * The Report class counts what happened to the records of an import and
+     * keeps the first few reasons rows were rejected.
+     */
+    public static class Report {
+        private long records;    // number of records read from the file
+        private long imported;   // number of new sayings added to the database
+        private long duplicates; // number of sayings that were already in the database
+        private long rejected;   // number of records that could not be turned into a saying
+        private final List<String> rejections = new ArrayList<>(); // sample of rejection reasons
+
+        // get the number of records read from the file
+        public long getRecords() {
+            return records;
+        }
+
+        // get the number of new sayings added to the database
+        public long getImported() {
+            return imported;
+        }
+
+        // get the number of sayings that were already in the database
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        // get the number of records that could not be turned into a saying
+        public long getRejected() {
+            return rejected;
+        }
+
+        // get the reasons for the first rejected records ("line 12: ...")
+        public List<String> getRejections() {
+            return rejections;
+        }
+
+        // record a rejected row, keeping only the first few reasons
+        private void reject(long line, String reason) {
+            rejected++;
+            if (rejections.size() < MAX_REJECTIONS) {
+                rejections.add("line " + line + ": " + reason);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Records: " + records + "\nImported: " + imported + "\nDuplicates: " + duplicates
+                    + "\nRejected: " + rejected;
+        }
+    }
+
+    static final int DEFAULT_BATCH_SIZE = 10_000; // sayings handed to the database at once
+    static final int MAX_REJECTIONS = 100;        // rejection reasons kept in a report
+    private static final int BUFFER_SIZE = 1 << 16; // size of the read buffer
+
+    private final SayingsDatabase db; // database the sayings are imported into
+    private final int batchSize;      // number of sayings loaded into the database at once
+    private final SayingArena arena;  // arena the text of the sayings is kept in, or null for Strings
+
+    // constructor that imports into the given database with the default batch size
+    public SayingsImporter(SayingsDatabase db) {
+        this(db, DEFAULT_BATCH_SIZE);
+    }
+
+    // constructor that imports into the given database in batches of the given size
+    public SayingsImporter(SayingsDatabase db, int batchSize) {
+        this(db, batchSize, null);
+    }
+
+    // constructor that imports into the given database in batches of the given size, keeping
+    // the text of the sayings in the arena (or in Strings if it is null)
+    public SayingsImporter(SayingsDatabase db, int batchSize, SayingArena arena) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.db = db;
+        this.batchSize = batchSize;
+        this.arena = arena;
+    }
+
+    // Import a file, guessing its format from the extension
+    public Report importFile(Path file) throws IOException {
+        return importFile(file, Format.forFile(file));
+    }
+
+    // Import a file in the given format
+    public Report importFile(Path file, Format format) throws IOException {
+        Report report = new Report();
+        List<Saying> batch = new ArrayList<>(Math.min(batchSize, DEFAULT_BATCH_SIZE));
+
+        // malformed bytes are replaced rather than aborting the whole import
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                BufferedReader reader = new BufferedReader(Channels.newReader(channel,
+                        StandardCharsets.UTF_8.newDecoder()
+                                .onMalformedInput(CodingErrorAction.REPLACE)
+                                .onUnmappableCharacter(CodingErrorAction.REPLACE), -1), BUFFER_SIZE)) {
+            RecordReader records = new RecordReader(reader, format);
+            List<String> fields;
+            while ((fields = records.next()) != null) {
+                // skip a header row at the top of a delimited file
+                if (report.records == 0 && format != Format.JSONL && !fields.isEmpty()
+                        && isHeader(fields.get(0))) {
+                    continue;
+                }
+                report.records++;
+                if (records.error != null) {
+                    report.reject(records.line, records.error);
+                    continue;
+                }
+
+                // check the fields before creating the saying
+                if (fields.size() < 2 || fields.size() > 3) {
+                    report.reject(records.line, "expected 2 or 3 fields but found " + fields.size());
+                } else if (isBlank(fields.get(0))) {
+                    report.reject(records.line, "missing Hawaiian words");
+                } else if (isBlank(fields.get(1))) {
+                    report.reject(records.line, "missing English translation");
+                } else {
+                    String hawaiianWords = fields.get(0).trim();
+                    String englishTranslation = fields.get(1).trim();
+                    String explanation = fields.size() == 3 && fields.get(2) != null ? fields.get(2).trim() : "";
+                    batch.add(arena == null ? new Saying(hawaiianWords, englishTranslation, explanation)
+                            : arena.compact(hawaiianWords, englishTranslation, explanation));
+                    if (batch.size() == batchSize) {
+                        load(batch, report);
+                    }
+                }
+            }
+        }
+        load(batch, report);
+        return report;
+    }
+
+    // hand a batch of sayings to the database and count the duplicates it dropped
+    private void load(List<Saying> batch, Report report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int added = db.bulkLoad(batch);
+        report.imported += added;
+        report.duplicates += batch.size() - added;
+        batch.clear();
+    }
+
+    // check whether the first field of a row is a column name rather than a saying
+    private static boolean isHeader(String field) {
+        return field != null && (field.trim().equalsIgnoreCase("hawaiian")
+                || field.trim().equalsIgnoreCase("hawaiianWords"));
+    }
+
+    // check whether a field is missing or only whitespace
+    private static boolean isBlank(String field) {
+        return field == null || field.trim().isEmpty();
+    }
+
+    /**
+     * The RecordReader class splits the lines of a file into the fields of
+     * one record at a time. A record that cannot be parsed comes back with
+     * error set to the reason.
+     */
+    private static class RecordReader {
+        private final BufferedReader reader; // source of the lines
+        private final Format format;         // how records are laid out
+        private long lineNumber;             // number of lines read so far
+        long line;                           // line on which the current record starts
+        String error;                        // why the current record could not be parsed, if it could not
+
+        RecordReader(BufferedReader reader, Format format) {
+            this.reader = reader;
+            this.format = format;
+        }
+
+        // read the fields of the next non-empty record, or null at the end of the file
+        List<String> next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                if (text == null) {
+                    return null;
+                }
+                lineNumber++;
+            } while (text.trim().isEmpty());
+
+            line = lineNumber;
+            error = null;
+            try {
+                switch (format) {
+                    case CSV:
+                        return splitCsv(text);
+                    case JSONL:
+                        return new JsonLine(text).parse();
+                    default:
+                        return splitTsv(text);
+                }
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+                return new ArrayList<>();
+            }
+        }
+
+        // split a tab-separated line
+        private List<String> splitTsv(String text) {
+            List<String> fields = new ArrayList<>(3);
+            int start = 0;
+            for (int i = text.indexOf('\t'); i >= 0; i = text.indexOf('\t', start)) {
+                fields.add(text.substring(start, i));
+                start = i + 1;
+            }
+            fields.add(text.substring(start));
+            return fields;
+        }
+
+        // split a comma-separated record, reading more lines while a quoted field is open
+        private List<String> splitCsv(String text) throws IOException {
+            List<String> fields = new ArrayList<>(3);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == text.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    // a quoted field continues on the next line
+                    String more = reader.readLine();
+                    if (more == null) {
+                        throw new IllegalArgumentException("unterminated quoted field");
+                    }
+                    lineNumber++;
+                    field.append('\n');
+                    text = more;
+                    i = 0;
+                    continue;
+                }
+                char c = text.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < text.length() && text.charAt(i) == '"') {
+                        field.append('"'); // "" is an escaped quote
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * The JsonLine class parses one JSON object whose values are strings (or
+     * null) into the Hawaiian, English and explanation fields.
+     */
+    private static class JsonLine {
+        private final String text; // the line being parsed
+        private int pos;           // position of the next character to read
+
+        JsonLine(String text) {
+            this.text = text;
+        }
+
+        // parse the object and return its fields in Hawaiian, English, explanation order
+        List<String> parse() {
+            String hawaiian = null;
+            String english = null;
+            String explanation = null;
+
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    skipWhitespace();
+                    String key = readString();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    String value = readValue();
+                    switch (key) {
+                        case "hawaiian":
+                        case "hawaiianWords":
+                            hawaiian = value;
+                            break;
+                        case "english":
+                        case "englishTranslation":
+                            english = value;
+                            break;
+                        case "explanation":
+                        case "sayingExplanation":
+                            explanation = value;
+                            break;
+                        default:
+                            break; // other keys are ignored
+                    }
+                    skipWhitespace();
+                    if (peek() == ',') {
+                        pos++;
+                    } else {
+                        expect('}');
+                        break;
+                    }
+                }
+            }
+            skipWhitespace();
+            if (pos < text.length()) {
+                throw new IllegalArgumentException("unexpected text after the JSON object");
+            }
+
+            List<String> fields = new ArrayList<>(3);
+            fields.add(hawaiian);
+            fields.add(english);
+            fields.add(explanation);
+            return fields;
+        }
+
+        // read a string or null value
+        private String readValue() {
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            if (peek() != '"') {
+                throw new IllegalArgumentException("only string values are supported at column " + (pos + 1));
+            }
+            return readString();
+        }
+
+        // read a quoted string, decoding its escape sequences
+        private String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (pos >= text.length()) {
+                    throw new IllegalArgumentException("unterminated string");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    throw new IllegalArgumentException("unterminated string");
+                }
+                char escape = text.charAt(pos++);
+                switch (escape) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append(escape);
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("truncated \\u escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("invalid \\u escape at column " + pos);
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("invalid escape \\" + escape);
+                }
+            }
+        }
+
+        // consume the expected character or reject the line
+        private void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("expected '" + c + "' at column " + (pos + 1));
+            }
+            pos++;
+        }
+
+        // look at the next character without consuming it (0 at the end of the line)
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+
+        // skip spaces between JSON tokens
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -18,7 +18,7 @@ import java.util.Scanner;
  * @author Binh Tran and Ellie Ishii
  *
  */
-public class Main {
+public class SayingsMain {
         public static void main(String[] args) {
                 // create an instance of SayingsDatabase to store and manage Hawaiian sayings
                 SayingsDatabase db = new SayingsDatabase();
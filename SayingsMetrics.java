@@ -0,0 +1,251 @@
+package sayingsDatabase;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.ConstructorParameters;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The SayingsMetrics class measures a SayingsDatabase while it runs: a
+ * latency Histogram for each Operation, the shape of the tree (size, height,
+ * and the rotations or splits and merges made to keep it balanced), and the
+ * number of tree nodes each lookup or traversal visits. A traversal (a scan,
+ * a page or an iteration) is counted when its iterator runs out or its
+ * reader stops taking sayings, so an iteration abandoned halfway through by
+ * code outside the database is not counted. A database only measures itself
+ * once enableMetrics is called; until then every operation pays one read of
+ * a null field.
+ *
+ * An operation is timed from when the database starts it to when it
+ * returns. Waiting for the write lock of a ConcurrentSayingsDatabase, or for
+ * the log of a DurableSayingsDatabase to reach the disk, is not included,
+ * since the lock is taken and the log awaited around the timed part.
+ *
+ * The metrics can be read directly, registered with the platform MBean
+ * server to be watched over JMX, and passed to a Sink as each operation
+ * finishes, to feed another metrics system.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+public final class SayingsMetrics implements SayingsMetricsMXBean {
+    // operations whose latencies are measured
+    public enum Operation {
+        INSERT, // insert
+        DELETE, // delete
+        UPDATE, // update
+        BULK_LOAD, // bulkLoad and buildFrom
+        MEMBER, // member
+        PREDECESSOR, // predecessor
+        SUCCESSOR, // successor
+        FIRST, // first
+        LAST, // last
+        RANK, // rank
+        SELECT, // select
+        GET_ALL_SAYINGS, // getAllSayings
+        PAGE, // page
+        RANGE, // starting to iterate over range, headSet, tailSet or iteratorAt
+        FILTER, // filter
+        WITH_WORD, // withWord and MeHua
+        WITH_WORD_IN_ENGLISH, // withWordInEnglish
+        WITH_TEXT, // withText
+        QUERY, // query
+        SEARCH, // search
+        COMPLETE, // complete
+        FUZZY_MATCH // fuzzyMatch
+    }
+
+    // receives the latency of every operation as it finishes, on the thread that ran it, so it
+    // must be quick and safe to call from several threads at once
+    public interface Sink {
+        void record(Operation operation, long nanos);
+    }
+
+    // a summary of a histogram, as JMX clients see it
+    public static final class Summary {
+        private final long count;
+        private final double mean;
+        private final long median;
+        private final long percentile99;
+        private final long percentile999;
+        private final long max;
+
+        // constructor for a summary of the given figures
+        @ConstructorParameters({ "count", "mean", "median", "percentile99", "percentile999", "max" })
+        public Summary(long count, double mean, long median, long percentile99, long percentile999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.median = median;
+            this.percentile99 = percentile99;
+            this.percentile999 = percentile999;
+            this.max = max;
+        }
+
+        // constructor for a summary of a histogram as it is now
+        Summary(Histogram histogram) {
+            this(histogram.getCount(), histogram.getMean(), histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMax());
+        }
+
+        // Get the number of values recorded
+        public long getCount() {
+            return count;
+        }
+
+        // Get the mean of the values
+        public double getMean() {
+            return mean;
+        }
+
+        // Get the value half of the values are at or below
+        public long getMedian() {
+            return median;
+        }
+
+        // Get the value 99% of the values are at or below
+        public long getPercentile99() {
+            return percentile99;
+        }
+
+        // Get the value 99.9% of the values are at or below
+        public long getPercentile999() {
+            return percentile999;
+        }
+
+        // Get the largest value
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " mean=" + mean + " p50=" + median + " p99=" + percentile99 + " p999="
+                    + percentile999 + " max=" + max;
+        }
+    }
+
+    private final OrderedStore<?, ?> tree; // tree of the database measured
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Histogram visits = new Histogram(); // nodes visited by each lookup or traversal of the tree
+    private volatile Sink sink; // receives every latency, or null
+    private ObjectName name; // name the metrics are registered under, or null
+
+    // constructor for the metrics of a database kept in the given tree
+    SayingsMetrics(OrderedStore<?, ?> tree) {
+        this.tree = tree;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Histogram());
+        }
+    }
+
+    // start timing an operation, if the database is measured (metrics is not null)
+    static long start(SayingsMetrics metrics) {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    // record the latency of an operation started at start, if the database is measured
+    static void stop(SayingsMetrics metrics, Operation operation, long start) {
+        if (metrics != null) {
+            long nanos = System.nanoTime() - start;
+            metrics.latencies.get(operation).record(nanos);
+            Sink receiver = metrics.sink;
+            if (receiver != null) {
+                receiver.record(operation, nanos);
+            }
+        }
+    }
+
+    // Pass the latency of every operation to a sink as well, or stop if sink is null
+    public void setSink(Sink sink) {
+        this.sink = sink;
+    }
+
+    // Get the latencies of an operation, in nanoseconds
+    public Histogram getLatencies(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    // Get the histogram of the number of tree nodes each lookup or traversal visited
+    public Histogram getVisits() {
+        return visits;
+    }
+
+    @Override
+    public int getSize() {
+        return tree.size();
+    }
+
+    @Override
+    public int getHeight() {
+        return tree.height();
+    }
+
+    @Override
+    public long getRebalances() {
+        return tree.rebalances;
+    }
+
+    @Override
+    public Map<String, Summary> getOperations() {
+        Map<String, Summary> operations = new LinkedHashMap<>();
+        for (Map.Entry<Operation, Histogram> entry : latencies.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                operations.put(entry.getKey().name(), new Summary(entry.getValue()));
+            }
+        }
+        return operations;
+    }
+
+    @Override
+    public Summary getLookupVisits() {
+        return new Summary(visits);
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram histogram : latencies.values()) {
+            histogram.reset();
+        }
+        visits.reset();
+    }
+
+    // Register the metrics with the platform MBean server under an object name such as
+    // "sayingsDatabase:type=SayingsDatabase,name=main", so JMX clients can watch them
+    public synchronized void register(String objectName) throws JMException {
+        if (name != null) {
+            throw new IllegalStateException("The metrics are already registered as " + name + ".");
+        }
+        ObjectName registered = new ObjectName(objectName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, registered);
+        name = registered;
+    }
+
+    // Remove the metrics from the platform MBean server, if they are registered
+    public synchronized void unregister() throws JMException {
+        if (name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            name = null;
+        }
+    }
+
+    // summarize the tree and the operations that have run
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("size=").append(getSize()).append(" height=").append(getHeight()).append(" rebalances=")
+                .append(getRebalances()).append(System.lineSeparator());
+        text.append("LOOKUP_VISITS ").append(getLookupVisits()).append(System.lineSeparator());
+        for (Map.Entry<String, Summary> entry : getOperations().entrySet()) {
+            text.append(entry.getKey()).append(' ').append(entry.getValue()).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+}
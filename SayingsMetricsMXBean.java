@@ -0,0 +1,33 @@
+package sayingsDatabase;
+
+import java.util.Map;
+
+/**
+ * The management interface of SayingsMetrics, which JMX clients such as
+ * JConsole or VisualVM see once the metrics are registered. Latencies are in
+ * nanoseconds.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+public interface SayingsMetricsMXBean {
+    // Get the number of sayings in the database
+    int getSize();
+
+    // Get the number of levels a lookup in the tree descends through
+    int getHeight();
+
+    // Get the number of rotations (AVL tree) or node splits and merges (B+-tree) made since the
+    // database was created
+    long getRebalances();
+
+    // Get the latencies of each operation that has run, by the name of the operation
+    Map<String, SayingsMetrics.Summary> getOperations();
+
+    // Get the number of tree nodes each lookup of a saying, its neighbour or its position, or
+    // each traversal of the tree, visited
+    SayingsMetrics.Summary getLookupVisits();
+
+    // Forget the latencies and node visits recorded so far
+    void reset();
+}
@@ -0,0 +1,498 @@
+package sayingsDatabase;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The SayingsServer class answers queries about one shared SayingsDatabase
+ * over HTTP, with the JDK's built-in com.sun.net.httpserver, so other
+ * programs can query the sayings without building their own copy of the
+ * tree. Every endpoint takes a GET request with its arguments in the query
+ * string and answers with JSON, sayings being objects with the keys
+ * "hawaiian", "english" and "explanation" that SayingsImporter reads:
+ *
+ * /member?words=...            {"member":true}
+ * /first, /last                {"saying":{...}} or {"saying":null}
+ * /predecessor?words=...       the same
+ * /successor?words=...         the same
+ * /withWord?word=...&match=... {"sayings":[...]}, match being substring (the
+ *                              default), phrase or phrase_ignoring_kahako
+ * /withWordInEnglish?word=...  the same
+ * /query?q=...                 {"sayings":[...]} for a boolean query
+ * /search?q=...&k=10           {"sayings":[...]}, best first
+ * /complete?prefix=...&limit=10 {"sayings":[...]}
+ * /sayings?offset=0&limit=20   {"size":n,"offset":0,"sayings":[...]}, a page of
+ *                              all the sayings in alphabetical order
+ *
+ * A bad argument gets 400, an unknown path 404 and any other failure 500,
+ * each with {"error":...}, unless the response had already started, in
+ * which case it is cut short. The cause of a failure is logged rather than
+ * sent, so a 500 only says that the request failed. A response that outgrows RESPONSE_BUFFER_SIZE
+ * bytes is written in chunks as it is produced, so a long list of sayings is
+ * never held as one string; shorter ones are sent whole. A page of /sayings
+ * is written straight from the tree as it is walked. At most MAX_LIMIT
+ * sayings are listed per page.
+ *
+ * Requests run on a fixed pool of worker threads fed by a bounded queue.
+ * When the queue is full, the request is handed to a single rejection
+ * thread that answers 503 with a Retry-After header, so a burst beyond what
+ * the pool can keep up with is turned away quickly rather than piling up in
+ * memory, and the server's own thread, which accepts the connections, never
+ * writes to one. If even the rejection thread is REJECTION_QUEUE_CAPACITY
+ * requests behind, the connection is closed without an answer. The
+ * database should be a ConcurrentSayingsDatabase if anything else changes it
+ * while the server runs.
+ *
+ * The JDK server writes the headers and the body of a response separately,
+ * so unless Nagle's algorithm is off, the body of every response waits for
+ * the client's delayed acknowledgement of the headers, about 40 ms on Linux.
+ * It is turned off by the system property sun.net.httpserver.nodelay=true,
+ * which the JDK reads once, when the first server starts. The server leaves
+ * it to the program to set (main sets it), so starting a server does not
+ * change how other HTTP servers in the same JVM behave.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+public final class SayingsServer implements Closeable {
+    // default number of worker threads
+    static final int DEFAULT_THREADS = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
+    // default number of requests that wait for a worker before new ones are turned away
+    static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    static final int DEFAULT_LIMIT = 20; // sayings per page when no limit is given
+    static final int MAX_LIMIT = 1000; // most sayings per page
+    static final int RESPONSE_BUFFER_SIZE = 1 << 13; // longest response sent whole rather than in chunks
+
+    // number of turned-away requests that wait for their 503 before connections are closed unanswered
+    static final int REJECTION_QUEUE_CAPACITY = 1024;
+
+    // system property that makes the JDK server turn on TCP_NODELAY for its connections
+    static final String NO_DELAY = "sun.net.httpserver.nodelay";
+
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final Logger LOGGER = Logger.getLogger(SayingsServer.class.getName()); // failed requests
+
+    private final SayingsDatabase db;
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers; // answer the requests
+    private final ThreadPoolExecutor rejections; // answers 503 to the requests the workers have no room for
+
+    // constructor for a server of a database that is not started yet
+    private SayingsServer(SayingsDatabase db, HttpServer server, ThreadPoolExecutor workers,
+            ThreadPoolExecutor rejections) {
+        this.db = db;
+        this.server = server;
+        this.workers = workers;
+        this.rejections = rejections;
+    }
+
+    // Start serving a database at an address (port 0 picks a free port)
+    public static SayingsServer start(SayingsDatabase db, InetSocketAddress address) throws IOException {
+        return start(db, address, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    // Start serving a database at an address with the given number of worker threads, turning
+    // requests away once queueCapacity of them are waiting for a worker
+    public static SayingsServer start(SayingsDatabase db, InetSocketAddress address, int threads, int queueCapacity)
+            throws IOException {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("A server needs at least one thread and room for one request.");
+        }
+        ThreadPoolExecutor workers = pool("sayings-server-", threads, queueCapacity);
+        ThreadPoolExecutor rejections = pool("sayings-server-busy-", 1, REJECTION_QUEUE_CAPACITY);
+        HttpServer server = HttpServer.create(address, queueCapacity);
+        SayingsServer sayingsServer = new SayingsServer(db, server, workers, rejections);
+        // with no executor the server's own thread runs dispatch, which only hands the request on
+        server.createContext("/", sayingsServer::dispatch);
+        server.start();
+        return sayingsServer;
+    }
+
+    // make a pool of daemon threads named prefix1, prefix2, ... fed by a bounded queue; when
+    // the queue is full, execute throws RejectedExecutionException
+    private static ThreadPoolExecutor pool(String prefix, int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, prefix + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.prestartAllCoreThreads();
+        return pool;
+    }
+
+    // Get the port the server listens on
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stop accepting requests, give those already accepted a second to finish and stop the workers
+    @Override
+    public void close() {
+        server.stop(1);
+        workers.shutdown();
+        rejections.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+            rejections.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // hand a request to a worker, or to the rejection thread if the workers have no room. This
+    // runs on the server's own thread, so it never reads or writes the connection itself.
+    private void dispatch(HttpExchange exchange) {
+        try {
+            workers.execute(() -> handle(exchange));
+        } catch (RejectedExecutionException busy) {
+            try {
+                rejections.execute(() -> turnAway(exchange));
+            } catch (RejectedExecutionException overwhelmed) {
+                exchange.close(); // with no response started, this only closes the connection
+            }
+        }
+    }
+
+    // answer a request, always closing the exchange
+    private void handle(HttpExchange exchange) {
+        try (exchange) {
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                sendError(exchange, 405, "Only GET is supported.");
+                return;
+            }
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+            try {
+                answer(exchange, exchange.getRequestURI().getPath(), parameters);
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Request " + exchange.getRequestURI() + " failed", e);
+                // once the response has started its status cannot change, so it is only cut short
+                if (exchange.getResponseCode() < 0) {
+                    sendError(exchange, 500, "The request failed.");
+                }
+            }
+        } catch (IOException e) {
+            // the connection failed while the answer was sent, and closing it is all that is left
+        }
+    }
+
+    // answer a request the workers had no room for with 503, always closing the exchange
+    private static void turnAway(HttpExchange exchange) {
+        try (exchange) {
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendError(exchange, 503, "The server is busy.");
+        } catch (IOException e) {
+            // the client went away before it could be told
+        }
+    }
+
+    // work out the answer to a request and send it; throws IllegalArgumentException before
+    // anything is sent if an argument is missing or wrong
+    private void answer(HttpExchange exchange, String path, Map<String, String> parameters) throws IOException {
+        switch (path) {
+            case "/member":
+                boolean member = db.member(required(parameters, "words"));
+                send(exchange, out -> out.write("{\"member\":" + member + "}"));
+                break;
+            case "/first":
+                sendSaying(exchange, db.first());
+                break;
+            case "/last":
+                sendSaying(exchange, db.last());
+                break;
+            case "/predecessor":
+                sendSaying(exchange, db.predecessor(required(parameters, "words")));
+                break;
+            case "/successor":
+                sendSaying(exchange, db.successor(required(parameters, "words")));
+                break;
+            case "/withWord":
+                sendSayings(exchange, db.withWord(required(parameters, "word"), match(parameters)));
+                break;
+            case "/withWordInEnglish":
+                sendSayings(exchange, db.withWordInEnglish(required(parameters, "word"), match(parameters)));
+                break;
+            case "/query":
+                sendSayings(exchange, db.query(required(parameters, "q")));
+                break;
+            case "/search":
+                String query = required(parameters, "q");
+                sendSayings(exchange, db.search(query, number(parameters, "k", 10, MAX_LIMIT)));
+                break;
+            case "/complete":
+                String prefix = required(parameters, "prefix");
+                sendSayings(exchange, db.complete(prefix, number(parameters, "limit", 10, MAX_LIMIT)));
+                break;
+            case "/sayings":
+                int offset = number(parameters, "offset", 0, Integer.MAX_VALUE);
+                int limit = number(parameters, "limit", DEFAULT_LIMIT, MAX_LIMIT);
+                int size = db.size();
+                send(exchange, out -> {
+                    out.write("{\"size\":" + size + ",\"offset\":" + offset + ",\"sayings\":[");
+                    // write the page as the tree is walked rather than collecting it first
+                    Iterator<Saying> sayings = db.iteratorAt(offset);
+                    for (int i = 0; i < limit && sayings.hasNext(); i++) {
+                        if (i > 0) {
+                            out.write(',');
+                        }
+                        writeSaying(out, sayings.next());
+                    }
+                    OrderedStore.finished(sayings);
+                    out.write("]}");
+                });
+                break;
+            default:
+                sendError(exchange, 404, "No such endpoint: " + path);
+        }
+    }
+
+    // writes the body of a response
+    private interface Body {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    // send a 200 response: a body that fits in RESPONSE_BUFFER_SIZE bytes is sent whole, with
+    // its length, and a longer one is written in chunks as it is produced
+    private static void send(HttpExchange exchange, Body body) throws IOException {
+        ResponseStream stream = new ResponseStream(exchange);
+        Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        body.writeTo(out);
+        out.flush();
+        stream.finish();
+    }
+
+    // the body of a 200 response, held back until it outgrows the buffer or is finished
+    private static final class ResponseStream extends OutputStream {
+        private final HttpExchange exchange;
+        private final byte[] buffer = new byte[RESPONSE_BUFFER_SIZE];
+        private int count; // bytes held in the buffer
+        private OutputStream chunks; // body of the response once its headers are sent, or null
+
+        ResponseStream(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (chunks == null && count + length <= buffer.length) {
+                System.arraycopy(bytes, offset, buffer, count, length);
+                count += length;
+                return;
+            }
+            if (chunks == null) {
+                // too long to hold back, so start sending it in chunks
+                exchange.sendResponseHeaders(200, 0);
+                chunks = exchange.getResponseBody();
+                chunks.write(buffer, 0, count);
+            }
+            chunks.write(bytes, offset, length);
+        }
+
+        // send what is held back, with its length if nothing has been sent yet
+        void finish() throws IOException {
+            if (chunks == null) {
+                exchange.sendResponseHeaders(200, count == 0 ? -1 : count);
+                exchange.getResponseBody().write(buffer, 0, count);
+            }
+        }
+    }
+
+    // send a saying, or null if there is none
+    private static void sendSaying(HttpExchange exchange, Saying saying) throws IOException {
+        send(exchange, out -> {
+            out.write("{\"saying\":");
+            writeSaying(out, saying);
+            out.write('}');
+        });
+    }
+
+    // send a list of sayings
+    private static void sendSayings(HttpExchange exchange, List<Saying> sayings) throws IOException {
+        send(exchange, out -> {
+            out.write("{\"sayings\":");
+            writeSayings(out, sayings);
+            out.write('}');
+        });
+    }
+
+    // send an error with its message
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = ("{\"error\":" + quote(message) + "}").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    // write a list of sayings as a JSON array
+    private static void writeSayings(Writer out, List<Saying> sayings) throws IOException {
+        out.write('[');
+        for (int i = 0; i < sayings.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeSaying(out, sayings.get(i));
+        }
+        out.write(']');
+    }
+
+    // write a saying as a JSON object, or null
+    private static void writeSaying(Writer out, Saying saying) throws IOException {
+        if (saying == null) {
+            out.write("null");
+            return;
+        }
+        out.write("{\"hawaiian\":");
+        out.write(quote(saying.getHawaiianWords()));
+        out.write(",\"english\":");
+        out.write(quote(saying.getEnglishTranslation()));
+        out.write(",\"explanation\":");
+        out.write(quote(saying.getExplanation()));
+        out.write('}');
+    }
+
+    // quote text as a JSON string, escaping quotes, backslashes and control characters
+    static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    // decode the arguments of a query string; the first of repeated arguments counts
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    // get an argument that must be given
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing argument: " + name);
+        }
+        return value;
+    }
+
+    // get a number argument from 0 to max, or the default if it is not given
+    private static int number(Map<String, String> parameters, String name, int defaultValue, int max) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            if (number < 0 || number > max) {
+                throw new IllegalArgumentException(name + " must be from 0 to " + max + ".");
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number.");
+        }
+    }
+
+    // get the way a word search matches, substring if it is not given
+    private static SayingsDatabase.Match match(Map<String, String> parameters) {
+        String value = parameters.get("match");
+        if (value == null) {
+            return SayingsDatabase.Match.SUBSTRING;
+        }
+        try {
+            return SayingsDatabase.Match.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("match must be substring, phrase or phrase_ignoring_kahako.");
+        }
+    }
+
+    // Serve the sayings imported from the given files on a port, for example
+    // "java sayingsDatabase.SayingsServer 8080 sayings.tsv"
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SayingsServer port [file ...]");
+            System.exit(2);
+        }
+        if (System.getProperty(NO_DELAY) == null) {
+            System.setProperty(NO_DELAY, "true"); // see the class comment
+        }
+        ConcurrentSayingsDatabase db = new ConcurrentSayingsDatabase();
+        SayingsImporter importer = new SayingsImporter(db);
+        for (int i = 1; i < args.length; i++) {
+            System.out.println(args[i] + ": " + importer.importFile(Path.of(args[i])));
+        }
+        SayingsServer server = start(db, new InetSocketAddress(Integer.parseInt(args[0])));
+        // when the program is told to exit, stop serving and give requests in progress a second to finish
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "sayings-server-shutdown"));
+        System.out.println("Serving " + db.size() + " sayings on port " + server.getPort());
+    }
+}
@@ -0,0 +1,194 @@
+package sayingsDatabase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SayingsSnapshot class saves sayings to a compact binary file and loads
+ * them back through a memory-mapped FileChannel. The file starts with a
+ * header (magic number, format version, number of sayings and the position
+ * of the record table), followed by a string table holding the UTF-8 bytes
+ * of every Hawaiian text, English translation and explanation, and ends with
+ * the record table: one (offset, length) pair per field for each saying, in
+ * alphabetical order. Only the Hawaiian words are decoded when the file is
+ * loaded, since the sayings are ordered by them; translations and
+ * explanations are decoded from the mapping when they are read.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+class SayingsSnapshot {
+    static final int MAGIC = 0x53415944; // "SAYD"
+    static final int VERSION = 1;        // current version of the file format
+    static final int HEADER_SIZE = 24;   // magic, version, count, flags and the table position
+    static final int RECORD_SIZE = 24;   // three (offset, length) int pairs per saying
+
+    private static final int BUFFER_SIZE = 1 << 16; // size of the write buffer
+
+    // Write the sayings (already in alphabetical order) to the file. The snapshot is written
+    // to a temporary file first and moved into place, so a crash never leaves a half-written file.
+    static void save(List<Saying> sayings, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            int[] table = new int[sayings.size() * 6];
+            long position = HEADER_SIZE;
+            channel.position(HEADER_SIZE);
+
+            // string table: the UTF-8 bytes of every field, remembering where each one starts
+            int t = 0;
+            for (Saying saying : sayings) {
+                for (String text : new String[] { saying.getHawaiianWords(), saying.getEnglishTranslation(),
+                        saying.getExplanation() }) {
+                    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                    table[t++] = (int) position;
+                    table[t++] = bytes.length;
+                    write(channel, buffer, bytes);
+                    position += bytes.length;
+                    if (position > Integer.MAX_VALUE) {
+                        throw new IOException("Snapshot is too large to be memory-mapped.");
+                    }
+                }
+            }
+
+            // record table: the offsets of each saying's fields, in alphabetical order
+            long tableOffset = position;
+            for (int value : table) {
+                if (buffer.remaining() < Integer.BYTES) {
+                    flush(channel, buffer);
+                }
+                buffer.putInt(value);
+            }
+            flush(channel, buffer);
+
+            // header, written last once the position of the table is known
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(sayings.size()).putInt(0).putLong(tableOffset).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Map the file into memory and return its sayings in alphabetical order. Only the
+    // Hawaiian words are decoded; translations and explanations stay in the mapping.
+    static List<Saying> load(Path file) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is too large to be memory-mapped.");
+            }
+            // the mapping stays valid after the channel is closed
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        // check the header
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a sayings snapshot.");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + data.getInt(4) + ".");
+        }
+        int count = data.getInt(8);
+        long tableOffset = data.getLong(16);
+        if (count < 0 || tableOffset < HEADER_SIZE || tableOffset + (long) count * RECORD_SIZE > data.capacity()) {
+            throw new IOException("Snapshot " + file + " is corrupt.");
+        }
+
+        // read the sayings from the record table
+        List<Saying> sayings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int record = (int) tableOffset + i * RECORD_SIZE;
+            String hawaiianWords = decode(data, field(data, record, 0), data.getInt(record + 4));
+            sayings.add(new MappedSaying(hawaiianWords, data, field(data, record, 8), data.getInt(record + 12),
+                    field(data, record, 16), data.getInt(record + 20)));
+        }
+        return sayings;
+    }
+
+    // read the offset of one field of a record, checking that it points into the string table
+    private static int field(ByteBuffer data, int record, int fieldOffset) throws IOException {
+        int offset = data.getInt(record + fieldOffset);
+        int length = data.getInt(record + fieldOffset + 4);
+        if (offset < HEADER_SIZE || length < 0 || (long) offset + length > data.capacity()) {
+            throw new IOException("Snapshot record points outside the string table.");
+        }
+        return offset;
+    }
+
+    // decode UTF-8 bytes of the mapped file into a string
+    static String decode(ByteBuffer data, int offset, int length) {
+        byte[] bytes = new byte[length];
+        data.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // append bytes to the write buffer, writing it out to the channel when it is full
+    private static void write(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            flush(channel, buffer);
+        }
+        if (bytes.length > buffer.capacity()) {
+            // too large to buffer, so write it directly
+            ByteBuffer large = ByteBuffer.wrap(bytes);
+            while (large.hasRemaining()) {
+                channel.write(large);
+            }
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    // write out everything in the buffer and clear it
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // a saying loaded from a snapshot whose translation and explanation are decoded from the
+    // mapped file on demand
+    private static class MappedSaying extends Saying {
+        private final ByteBuffer data; // the mapped snapshot file
+        private final int englishOffset; // where the English translation's bytes start
+        private final int englishLength; // number of bytes in the English translation
+        private final int explanationOffset; // where the explanation's bytes start
+        private final int explanationLength; // number of bytes in the explanation
+
+        MappedSaying(String hawaiianWords, ByteBuffer data, int englishOffset, int englishLength,
+                int explanationOffset, int explanationLength) {
+            super(hawaiianWords, null, null);
+            this.data = data;
+            this.englishOffset = englishOffset;
+            this.englishLength = englishLength;
+            this.explanationOffset = explanationOffset;
+            this.explanationLength = explanationLength;
+        }
+
+        // decode the translation each time so it is never kept on the heap
+        @Override
+        public String getEnglishTranslation() {
+            return decode(data, englishOffset, englishLength);
+        }
+
+        // decode the explanation each time so it is never kept on the heap
+        @Override
+        public String getExplanation() {
+            return decode(data, explanationOffset, explanationLength);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package sayingsDatabase;
+
+import java.util.Arrays;
+
+/**
+ * The TextMatcher class finds a query inside text while ignoring case,
+ * without allocating anything per text it looks at. The query is lowercased
+ * once when the matcher is made, and the text is lowercased one character at
+ * a time as it is compared, so scanning a whole database creates no
+ * temporary strings. The scan uses Boyer–Moore–Horspool: when a window of the
+ * text does not match, the last character of the window decides how far the
+ * window can jump, so most characters of the text are never compared.
+ *
+ * A matcher never changes after it is made and may be shared between threads.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+final class TextMatcher {
+    private static final int TABLE_SIZE = 256; // characters share a shift by their low byte
+
+    private final char[] pattern; // the lowercased query
+    private final int[] shift = new int[TABLE_SIZE]; // how far to move the window, by its last character
+
+    // constructor that prepares the query for searching
+    TextMatcher(String query) {
+        pattern = new char[query.length()];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = fold(query.charAt(i));
+        }
+
+        // a window can move past its last character unless that character appears earlier in
+        // the pattern; characters with the same low byte keep the smallest (safest) shift
+        int m = pattern.length;
+        Arrays.fill(shift, Math.max(m, 1));
+        for (int i = 0; i < m - 1; i++) {
+            shift[pattern[i] & (TABLE_SIZE - 1)] = m - 1 - i;
+        }
+    }
+
+    // check if the text contains the query, ignoring case
+    boolean matches(String text) {
+        return indexIn(text) >= 0;
+    }
+
+    // find where the query first occurs in the text, ignoring case, or -1 if it does not
+    int indexIn(String text) {
+        int m = pattern.length;
+        int last = text.length() - m;
+        int i = 0;
+        while (i <= last) {
+            // compare the window from its end, where mismatches are most likely
+            int j = m - 1;
+            while (j >= 0 && fold(text.charAt(i + j)) == pattern[j]) {
+                j--;
+            }
+            if (j < 0) {
+                return i;
+            }
+            i += shift[fold(text.charAt(i + m - 1)) & (TABLE_SIZE - 1)];
+        }
+        return -1;
+    }
+
+    // Get the first length characters of the lowercased query, or all of it if it is shorter
+    String prefix(int length) {
+        return new String(pattern, 0, Math.min(length, pattern.length));
+    }
+
+    // lowercase a single character, the way the query and the text are compared
+    static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+}
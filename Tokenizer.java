@@ -0,0 +1,77 @@
+package sayingsDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The Tokenizer class splits Hawaiian and English text into words for the
+ * word indexes. Words are runs of letters and digits, split by whitespace and
+ * punctuation. The ʻokina is a letter of Hawaiian, so it stays inside the
+ * word it starts ("ʻāina" is one word, not "āina"). An apostrophe typed in
+ * place of the ʻokina counts as one when a vowel follows it, and is
+ * punctuation otherwise, so quotes and possessives still split words.
+ *
+ * Words are lowercased as they are split. Comparing two words can also treat
+ * every ʻokina variant as U+02BB and, optionally, fold the kahakō.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+final class Tokenizer {
+    private Tokenizer() {
+    }
+
+    // split text into its lowercased words, in order
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            // skip characters that separate words
+            if (!isWordChar(text, i)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && isWordChar(text, i)) {
+                i++;
+            }
+            words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        }
+        return words;
+    }
+
+    // check whether the character at position i of the text belongs to a word
+    static boolean isWordChar(String text, int i) {
+        char c = text.charAt(i);
+        if (Character.isLetterOrDigit(c)) {
+            return true; // includes the ʻokina itself (U+02BB)
+        }
+        // an apostrophe written for the ʻokina comes right before a vowel
+        return Saying.isOkina(c) && i + 1 < text.length() && isVowel(text.charAt(i + 1));
+    }
+
+    // check whether a character is a vowel, with or without a kahakō
+    private static boolean isVowel(char c) {
+        switch (Saying.foldKahako(Character.toLowerCase(c))) {
+            case 'a':
+            case 'e':
+            case 'i':
+            case 'o':
+            case 'u':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // write every ʻokina variant of a lowercased word as U+02BB, and fold the kahakō if asked to
+    static String spelling(String word, boolean foldKahako) {
+        StringBuilder spelling = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            spelling.append(Saying.isOkina(c) ? '\u02BB' : foldKahako ? Saying.foldKahako(c) : c);
+        }
+        return spelling.toString();
+    }
+}
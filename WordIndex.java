@@ -0,0 +1,336 @@
+package sayingsDatabase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * The WordIndex class is an inverted index from the normalized words of one
+ * field of a saying (the Hawaiian words, the English translation or the
+ * explanation) to the sayings that use them, so word lookups do not have to
+ * visit every node of the tree.
+ *
+ * Each word is indexed as the Tokenizer splits it, with its positions in the
+ * text, so the index also answers whole-word and phrase queries. Words are
+ * also grouped by their spelling with one form of the ʻokina and no kahakō,
+ * which lets a query match "mālama" and "malama" alike when it asks to.
+ *
+ * The vocabulary itself is indexed by every substring of up to GRAM letters
+ * of each word, so a substring search finds the words containing it without
+ * looking at the others: a query of up to GRAM letters is one lookup, and a
+ * longer one checks only the words sharing its rarest GRAM-letter piece.
+ *
+ * Deleting a saying only takes its length out of the total: the saying's
+ * document number is no longer live, and searches skip the entries of
+ * documents that are not, so a deletion costs O(1) here however common its
+ * words are. The entries left behind are freed when SayingsDatabase
+ * compacts its indexes, which rebuilds them from the live sayings.
+ *
+ * Only one thread may add to an index at a time, but any number of threads
+ * may search it meanwhile: each word's list of sayings is append-only and is
+ * republished after every addition, so readers never see a half-added entry.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+class WordIndex {
+    static final int GRAM = 3; // longest substrings of the words that the vocabulary is indexed by
+
+    // an append-only list of words, published like Postings: readers never look past its count
+    private static final class Words {
+        final String[] words;
+        final int count;
+
+        Words(String[] words, int count) {
+            this.words = words;
+            this.count = count;
+        }
+
+        // return a version of the list with the word added at the end
+        Words append(String word) {
+            String[] storage = words;
+            if (count == storage.length) {
+                storage = Arrays.copyOf(storage, 2 * storage.length);
+            }
+            storage[count] = word;
+            return new Words(storage, count + 1);
+        }
+    }
+
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>(); // word -> where it is used
+    private final Map<String, String[]> spellings = new ConcurrentHashMap<>(); // folded spelling -> words
+    private final Map<String, Words> grams = new ConcurrentHashMap<>(); // substring of up to GRAM letters -> words
+    private volatile int[] lengths = new int[16]; // number of words in the field, by document number
+    private volatile long totalLength; // number of words in the field of all live documents
+    private final Function<Saying, String> field; // gets the text of the indexed field of a saying
+    private final Comparator<Saying> order; // order in which matching sayings are returned
+
+    // constructor that creates an empty index over one field of the sayings
+    WordIndex(Function<Saying, String> field, Comparator<Saying> order) {
+        this.field = field;
+        this.order = order;
+    }
+
+    // add every word of the saying's text to the index, with its position in the text; doc is
+    // the saying's document number, which must be larger than that of any saying added before
+    void add(Saying saying, int doc) {
+        List<String> words = Tokenizer.tokenize(textOf(saying));
+        // record the length before the words, so readers who find the saying find its length
+        int[] lengths = this.lengths;
+        if (doc >= lengths.length) {
+            lengths = Arrays.copyOf(lengths, Math.max(2 * lengths.length, doc + 1));
+        }
+        lengths[doc] = words.size();
+        this.lengths = lengths;
+        totalLength += words.size();
+        for (int position = 0; position < words.size(); position++) {
+            append(words.get(position), saying, doc, position);
+        }
+    }
+
+    // add a use of a word to its list and publish the longer list
+    private void append(String word, Saying saying, int doc, int position) {
+        Postings list = postings.get(word);
+        if (list != null) {
+            postings.put(word, list.append(saying, doc, position));
+            return;
+        }
+        postings.put(word, new Postings(saying, doc, position));
+        // a new word is also listed under its spelling without the ʻokina variants and kahakō,
+        // after its postings so that readers who find the spelling also find the postings
+        String spelling = Tokenizer.spelling(word, true);
+        String[] words = spellings.get(spelling);
+        if (words == null) {
+            words = new String[] { word };
+        } else {
+            words = Arrays.copyOf(words, words.length + 1);
+            words[words.length - 1] = word;
+        }
+        spellings.put(spelling, words);
+        addGrams(word);
+    }
+
+    // list a new word under each distinct substring of up to GRAM letters it contains
+    private void addGrams(String word) {
+        Set<String> seen = new HashSet<>();
+        for (int length = 1; length <= GRAM; length++) {
+            for (int start = 0; start + length <= word.length(); start++) {
+                String gram = word.substring(start, start + length);
+                if (seen.add(gram)) {
+                    Words words = grams.get(gram);
+                    grams.put(gram, words == null ? new Words(new String[] { word }, 1) : words.append(word));
+                }
+            }
+        }
+    }
+
+    // find the indexed words that may contain a lowercased word: exactly those that do if it has
+    // at most GRAM letters, and otherwise those sharing its rarest GRAM-letter piece, or null if
+    // no indexed word can contain it
+    private Words candidates(String word) {
+        if (word.length() <= GRAM) {
+            return grams.get(word);
+        }
+        Words rarest = null;
+        for (int start = 0; start + GRAM <= word.length(); start++) {
+            Words words = grams.get(word.substring(start, start + GRAM));
+            if (words == null) {
+                return null;
+            }
+            if (rarest == null || words.count < rarest.count) {
+                rarest = words;
+            }
+        }
+        return rarest;
+    }
+
+    // find the sayings whose text contains the given word (case insensitive), among the
+    // documents that are live, or null if the word has no letters to look up in the index
+    List<Saying> find(String word, IntPredicate live) {
+        String query = normalize(word);
+        String longest = longestWord(query);
+        if (longest == null) {
+            return null;
+        }
+
+        // every occurrence of the query lies inside indexed words that contain
+        // its longest word, so only the sayings using those words are candidates
+        boolean singleWord = longest.length() == query.length();
+        TextMatcher wordMatcher = new TextMatcher(longest);
+        TextMatcher queryMatcher = new TextMatcher(query);
+        Set<Saying> matches = Collections.newSetFromMap(new IdentityHashMap<>());
+        Words candidates = candidates(longest);
+        for (int w = 0; candidates != null && w < candidates.count; w++) {
+            String indexed = candidates.words[w];
+            if (longest.length() > GRAM && !wordMatcher.matches(indexed)) {
+                continue;
+            }
+            Postings list = postings.get(indexed);
+            for (int i = 0; i < list.count(); i++) {
+                Saying saying = list.get(i);
+                if (!live.test(list.doc(i))) {
+                    continue; // deleted
+                }
+                // the matcher ignores case as it goes, so the text is not copied to check it
+                if (singleWord || queryMatcher.matches(textOf(saying))) {
+                    matches.add(saying);
+                }
+            }
+        }
+
+        // return the matches alphabetically
+        List<Saying> result = new ArrayList<>(matches);
+        result.sort(order);
+        return result;
+    }
+
+    // Get the document numbers, in increasing order, of the sayings whose text contains the
+    // words of the phrase as whole words, one right after the other (case insensitive, and
+    // ignoring the kahakō if asked to). The phrase is matched with the word positions in the
+    // index, starting from its rarest word, so no text is searched.
+    int[] findPhrase(String phrase, boolean foldKahako) {
+        List<String> words = Tokenizer.tokenize(phrase);
+        if (words.isEmpty()) {
+            return new int[0];
+        }
+        long[][] uses = new long[words.size()][];
+        int rarest = 0;
+        for (int k = 0; k < words.size(); k++) {
+            uses[k] = uses(words.get(k), foldKahako);
+            if (uses[k].length < uses[rarest].length) {
+                rarest = k;
+            }
+        }
+
+        // every use of the rarest word may be part of a match that starts that many words earlier
+        int[] docs = new int[uses[rarest].length];
+        int n = 0;
+        for (long use : uses[rarest]) {
+            int doc = doc(use);
+            int start = (int) use - rarest;
+            if (start < 0 || (n > 0 && docs[n - 1] == doc)) {
+                continue;
+            }
+            boolean match = true;
+            for (int k = 0; k < words.size() && match; k++) {
+                match = k == rarest || Arrays.binarySearch(uses[k], use(doc, start + k)) >= 0;
+            }
+            if (match) {
+                docs[n++] = doc;
+            }
+        }
+        return Arrays.copyOf(docs, n);
+    }
+
+    // Get a cursor over the documents that use a lowercased word, in any of its spellings
+    // (ignoring ʻokina variants and the kahakō)
+    DocCursor cursor(String word) {
+        String[] words = spellings.get(Tokenizer.spelling(word, true));
+        List<DocCursor> parts = new ArrayList<>();
+        for (int i = 0; words != null && i < words.length; i++) {
+            parts.add(new DocCursor.OfPostings(postings.get(words[i])));
+        }
+        return parts.size() == 1 ? parts.get(0) : new DocCursor.Union(parts);
+    }
+
+    // Get the number of words in the field of a document
+    int length(int doc) {
+        return lengths[doc];
+    }
+
+    // take the field of a deleted document out of the total length; its entries stay until
+    // the indexes are compacted
+    void remove(int doc) {
+        totalLength -= lengths[doc];
+    }
+
+    // Get the average number of words in the field, over the given number of live documents
+    double averageLength(int documents) {
+        return documents == 0 ? 0 : (double) totalLength / documents;
+    }
+
+    // Collect the uses of a lowercased word, as (document, position) pairs in increasing
+    // order, under every indexed spelling of the word that matches it; doc gets the
+    // document number out of a pair
+    long[] uses(String word, boolean foldKahako) {
+        String[] words = spellings.get(Tokenizer.spelling(word, true));
+        if (words == null) {
+            return new long[0];
+        }
+        String wanted = Tokenizer.spelling(word, foldKahako);
+        long[] uses = new long[0];
+        int spellingsUsed = 0;
+        for (String indexed : words) {
+            if (!Tokenizer.spelling(indexed, foldKahako).equals(wanted)) {
+                continue;
+            }
+            Postings list = postings.get(indexed);
+            int n = uses.length;
+            uses = Arrays.copyOf(uses, n + list.count());
+            for (int i = 0; i < list.count(); i++) {
+                uses[n + i] = use(list.doc(i), list.position(i));
+            }
+            spellingsUsed++;
+        }
+        // each list is in order, but uses from several spellings have to be merged
+        if (spellingsUsed > 1) {
+            Arrays.sort(uses);
+        }
+        return uses;
+    }
+
+    // pack a document number and a word position into one sortable value
+    private static long use(int doc, int position) {
+        return (long) doc << 32 | position;
+    }
+
+    // get the document number out of a (document, position) pair
+    static int doc(long use) {
+        return (int) (use >>> 32);
+    }
+
+    // get the text of the field covered by this index
+    private String textOf(Saying saying) {
+        return field.apply(saying);
+    }
+
+    // find the longest run of word characters in the text, or null if there is none
+    private static String longestWord(String text) {
+        String longest = null;
+        int i = 0;
+        while (i < text.length()) {
+            if (!isWordChar(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && isWordChar(text.charAt(i))) {
+                i++;
+            }
+            if (longest == null || i - start > longest.length()) {
+                longest = text.substring(start, i);
+            }
+        }
+        return longest;
+    }
+
+    // normalize text so that lookups are case insensitive
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    // letters (including the ʻokina) and digits make up words, everything else separates them
+    static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+}
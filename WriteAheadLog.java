@@ -0,0 +1,306 @@
+package sayingsDatabase;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * The WriteAheadLog class appends the mutations of a database to a log file,
+ * so they can be replayed after a restart. The file starts with a header
+ * (magic number and format version) followed by one record per mutation:
+ * the length of its body, a CRC-32C checksum of the body, and the body
+ * itself, which is a record type and the UTF-8 text of each field.
+ *
+ * Records are appended to a buffer in memory, which is cheap enough to do
+ * while holding the database's write lock. Writing the buffer to the file
+ * and forcing it to disk happens outside the lock: a writer that asks for
+ * its record to be durable either finds that another writer's fsync already
+ * covered it, or writes and forces everything appended so far, covering the
+ * writers queued behind it as well. This is group commit: under load, many
+ * mutations share one fsync.
+ *
+ * If writing or forcing the file fails, the records it held may or may not
+ * have reached the disk, so the log cuts the file back to what was written
+ * before and fails for good: every later append, sync and force throws.
+ *
+ * Reading a log stops at the first record that is cut short or fails its
+ * checksum, which is how the tail of a write interrupted by a crash looks.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+class WriteAheadLog implements Closeable {
+    static final int MAGIC = 0x5341594C; // "SAYL"
+    static final int VERSION = 1;        // current version of the log format
+    static final int HEADER_SIZE = 8;    // magic and version
+    static final int RECORD_HEADER_SIZE = 8; // body length and checksum
+
+    // record types
+    static final byte INSERT = 1; // the three fields of a new saying
+    static final byte DELETE = 2; // the Hawaiian words of a deleted saying
+    static final byte UPDATE = 3; // the Hawaiian words of the old saying and the fields of the new one
+
+    private static final int BUFFER_SIZE = 1 << 16; // initial size of the append buffers
+
+    // a record read back from a log
+    static final class Entry {
+        final byte type;
+        final String[] fields;
+
+        Entry(byte type, String[] fields) {
+            this.type = type;
+            this.fields = fields;
+        }
+    }
+
+    // receives the records of a log as it is read
+    interface Replayer {
+        void replay(Entry entry) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final Object appendLock = new Object(); // guards pending and appended
+    private final Object syncLock = new Object();   // lets one thread write the file at a time
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE); // records not yet written
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);   // buffer to swap in when writing
+    private long appended; // length the file will have once everything appended is written
+    private long written;  // length of the file written so far (guarded by syncLock)
+    private volatile long durable; // length of the file known to be on disk
+    private boolean closed; // (guarded by syncLock)
+    private volatile IOException failure; // failed write or force, after which the log refuses everything
+
+    // start appending to an open log file after its first length bytes
+    private WriteAheadLog(FileChannel channel, long length) {
+        this.channel = channel;
+        this.appended = length;
+        this.written = length;
+        this.durable = length;
+    }
+
+    // Create a new, empty log file
+    static WriteAheadLog create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        return new WriteAheadLog(channel, HEADER_SIZE);
+    }
+
+    // Open an existing log to append after its valid records, which read has measured
+    static WriteAheadLog append(Path file, long validLength) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        // drop a torn record at the end, so new records do not follow garbage
+        channel.truncate(validLength);
+        channel.position(validLength);
+        channel.force(true);
+        return new WriteAheadLog(channel, validLength);
+    }
+
+    // Read the records of a log in order and return the length of its valid part. A record
+    // that is cut short or fails its checksum ends the last log, where a crash can leave one;
+    // in an earlier log it means the log is corrupt.
+    static long read(Path file, boolean last, Replayer replayer) throws IOException {
+        long size = Files.size(file);
+        try (InputStream stream = Files.newInputStream(file);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE))) {
+            if (size < HEADER_SIZE || in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a write-ahead log.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported write-ahead log version " + version + ".");
+            }
+            long valid = HEADER_SIZE;
+            CRC32C crc = new CRC32C();
+            while (valid < size) {
+                Entry entry = null;
+                int length = 0;
+                try {
+                    length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length > 0 && length <= size - valid - RECORD_HEADER_SIZE) {
+                        byte[] body = new byte[length];
+                        in.readFully(body);
+                        crc.reset();
+                        crc.update(body);
+                        if ((int) crc.getValue() == checksum) {
+                            entry = decode(body);
+                        }
+                    }
+                } catch (EOFException e) {
+                    // cut short
+                }
+                if (entry == null) {
+                    if (!last) {
+                        throw new IOException("Write-ahead log " + file + " is corrupt at byte " + valid + ".");
+                    }
+                    break;
+                }
+                replayer.replay(entry);
+                valid += RECORD_HEADER_SIZE + length;
+            }
+            return valid;
+        }
+    }
+
+    // Throw the failure of an earlier write or force, if there was one
+    void check() throws IOException {
+        IOException failure = this.failure;
+        if (failure != null) {
+            throw new IOException("The write-ahead log failed earlier and takes no more records.", failure);
+        }
+    }
+
+    // Append a record to the buffer and return the length the file will have once it is written;
+    // throws UncheckedIOException if the log has failed
+    long append(byte type, String... fields) {
+        try {
+            check();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[][] bytes = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            bytes[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+        }
+        ByteBuffer body = ByteBuffer.allocate(bodyLength(bytes));
+        body.put(type);
+        for (byte[] field : bytes) {
+            body.putInt(field.length).put(field);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body.array());
+
+        synchronized (appendLock) {
+            int size = RECORD_HEADER_SIZE + body.capacity();
+            if (pending.remaining() < size) {
+                // grow the buffer to hold at least this record
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            pending.putInt(body.capacity()).putInt((int) crc.getValue()).put(body.array());
+            appended += size;
+            return appended;
+        }
+    }
+
+    // Make sure the file holds everything appended up to the given length, forcing it to disk
+    // if asked to. A writer finding its record already covered by another's write returns at once.
+    void sync(long length, boolean force) throws IOException {
+        if (durable >= length) {
+            return;
+        }
+        synchronized (syncLock) {
+            check();
+            if (closed || durable >= length || (!force && written >= length)) {
+                return;
+            }
+            // take everything appended so far, letting writers go on appending to the other buffer
+            ByteBuffer out;
+            long end;
+            synchronized (appendLock) {
+                out = pending;
+                pending = spare;
+                end = appended;
+            }
+            long start = written;
+            try {
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                written = end;
+                if (force) {
+                    channel.force(false);
+                    durable = end;
+                }
+            } catch (IOException e) {
+                fail(e, start);
+                throw e;
+            } finally {
+                out.clear();
+                spare = out;
+            }
+        }
+    }
+
+    // fail for good after a write or force did, cutting the file back to the length it had before,
+    // so that nothing after a partial record or an unforced one is ever read back
+    private void fail(IOException e, long length) {
+        failure = e;
+        written = length;
+        try {
+            channel.truncate(length);
+        } catch (IOException truncation) {
+            e.addSuppressed(truncation);
+        }
+    }
+
+    // Write and force everything appended so far
+    void force() throws IOException {
+        check();
+        long length;
+        synchronized (appendLock) {
+            length = appended;
+        }
+        sync(length, true);
+    }
+
+    // Force everything appended to disk and close the file. Writers still waiting on this log
+    // find their records durable and return.
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            synchronized (syncLock) {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+
+    // compute the length of a record body: the type, then a length and the bytes of each field
+    private static int bodyLength(byte[][] fields) {
+        int length = 1;
+        for (byte[] field : fields) {
+            length += Integer.BYTES + field.length;
+        }
+        return length;
+    }
+
+    // decode a record body whose checksum matched
+    private static Entry decode(byte[] body) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(body);
+        byte type = data.get();
+        int count = type == INSERT ? 3 : type == DELETE ? 1 : type == UPDATE ? 4 : -1;
+        if (count < 0) {
+            throw new IOException("Unknown write-ahead log record type " + type + ".");
+        }
+        String[] fields = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = data.remaining() >= Integer.BYTES ? data.getInt() : -1;
+            if (length < 0 || length > data.remaining()) {
+                throw new IOException("Write-ahead log record has a field longer than the record.");
+            }
+            fields[i] = SayingsSnapshot.decode(data, data.position(), length);
+            data.position(data.position() + length);
+        }
+        return new Entry(type, fields);
+    }
+}
@@ -0,0 +1,85 @@
+package sayingsDatabase;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for AVLTree over the same synthetic corpora as
+ * SayingsDatabaseBenchmark, so the two trees can be compared directly.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class AVLTreeBenchmark {
+    private static final int PROBES = 1 << 12; // number of precomputed lookups (a power of two)
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    int corpusSize;
+
+    private List<Saying> corpus; // sayings loaded into the tree
+    private Saying[] probes;     // sayings looked up by the benchmarks
+    private AVLTree tree;        // tree holding the corpus
+    private int next;            // position of the next probe
+
+    // generate the corpus and build the tree once per corpus size
+    @Setup(Level.Trial)
+    public void load() {
+        corpus = new SyntheticSayings(42).generate(corpusSize);
+        tree = new AVLTree();
+        for (Saying saying : corpus) {
+            tree.insert(saying);
+        }
+        probes = new Saying[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = corpus.get((int) ((long) i * corpusSize / PROBES));
+        }
+    }
+
+    @Benchmark
+    public AVLTree insertAll() {
+        AVLTree fresh = new AVLTree();
+        for (Saying saying : corpus) {
+            fresh.insert(saying);
+        }
+        return fresh;
+    }
+
+    @Benchmark
+    public boolean member() {
+        return tree.member(probes[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Saying successor() {
+        return tree.successor(probes[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public List<Saying> inOrderTraversal() {
+        return tree.inOrderTraversal();
+    }
+
+    @Benchmark
+    public List<Saying> meHua() {
+        return tree.MeHua("aloha");
+    }
+}
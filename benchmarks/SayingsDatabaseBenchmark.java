@@ -0,0 +1,170 @@
+package sayingsDatabase;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for the operations of SayingsDatabase over synthetic
+ * corpora of 1,000 to 1,000,000 sayings, kept in each storage engine. Every
+ * benchmark reports throughput; run with "-prof gc" (or through main, which
+ * adds the GC profiler) to get the allocation rate as well.
+ *
+ * Build the database with "mvn install" in the parent directory, then
+ * "mvn package" here, and run "java -jar target/benchmarks.jar -prof gc".
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class SayingsDatabaseBenchmark {
+    private static final int PROBES = 1 << 12; // number of precomputed lookup keys (a power of two)
+    private static final int EXTRA = 1 << 20;  // number of new sayings available to the insert benchmark
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    int corpusSize;
+
+    @Param({ "AVL_TREE", "B_PLUS_TREE" })
+    SayingsDatabase.Storage storage;
+
+    private List<Saying> corpus;   // sayings loaded into the database
+    private Saying[] extra;        // sayings that are not in the corpus, for inserts
+    private String[] present;      // Hawaiian words of sayings in the database
+    private String[] absent;       // Hawaiian words that fall between sayings of the database
+    private SayingsDatabase db;    // database holding the corpus
+    private int next;              // position of the next probe or extra saying
+
+    // generate the corpus and the lookup keys once per corpus size
+    @Setup(Level.Trial)
+    public void generate() {
+        SyntheticSayings generator = new SyntheticSayings(42);
+        corpus = generator.generate(corpusSize);
+        extra = new Saying[EXTRA];
+        for (int i = 0; i < EXTRA; i++) {
+            extra[i] = generator.next(corpusSize + i);
+        }
+        present = new String[PROBES];
+        absent = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            present[i] = corpus.get((int) ((long) i * corpusSize / PROBES)).getHawaiianWords();
+            absent[i] = present[i] + " ";
+        }
+    }
+
+    // rebuild the database before every iteration so inserts do not accumulate across iterations
+    @Setup(Level.Iteration)
+    public void load() {
+        db = new SayingsDatabase(storage);
+        db.bulkLoad(corpus);
+        next = 0;
+    }
+
+    // pick the next probe key in a fixed rotation
+    private int probe() {
+        return next++ & (PROBES - 1);
+    }
+
+    @Benchmark
+    public boolean insert() {
+        // cycles through a million new sayings; after that the inserts become duplicates
+        return db.insert(extra[next++ % EXTRA]);
+    }
+
+    @Benchmark
+    public SayingsDatabase bulkLoad() {
+        SayingsDatabase fresh = new SayingsDatabase(storage);
+        fresh.bulkLoad(corpus);
+        return fresh;
+    }
+
+    @Benchmark
+    public boolean memberHit() {
+        return db.member(present[probe()]);
+    }
+
+    @Benchmark
+    public boolean memberMiss() {
+        return db.member(absent[probe()]);
+    }
+
+    @Benchmark
+    public Saying first() {
+        return db.first();
+    }
+
+    @Benchmark
+    public Saying last() {
+        return db.last();
+    }
+
+    @Benchmark
+    public Saying predecessor() {
+        return db.predecessor(absent[probe()]);
+    }
+
+    @Benchmark
+    public Saying successor() {
+        return db.successor(absent[probe()]);
+    }
+
+    @Benchmark
+    public List<Saying> getAllSayings() {
+        return db.getAllSayings();
+    }
+
+    @Benchmark
+    public List<Saying> withWordCommon() {
+        return db.withWord(SyntheticSayings.COMMON_WORDS[probe() % SyntheticSayings.COMMON_WORDS.length]);
+    }
+
+    @Benchmark
+    public List<Saying> withWordRare() {
+        // the serial number at the end of each saying is a word used by only a few sayings
+        return db.withWord(Integer.toString(probe() * 7, 36));
+    }
+
+    @Benchmark
+    public List<Saying> withWordInEnglish() {
+        return db.withWordInEnglish("wisdom");
+    }
+
+    @Benchmark
+    public List<Saying> meHua() {
+        return db.MeHua("aloha");
+    }
+
+    @Benchmark
+    public List<Saying> withTextScan() {
+        // an unindexed substring scan of every field, which runs on all cores for large corpora
+        return db.withText("wisdom of");
+    }
+
+    // run every benchmark with the GC profiler to report allocation rates
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SayingsDatabaseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
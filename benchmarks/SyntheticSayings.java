@@ -0,0 +1,76 @@
+package sayingsDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The SyntheticSayings class generates Hawaiian-like sayings for the
+ * benchmarks. Words are built from Hawaiian syllables (a consonant or the
+ * ʻokina followed by a vowel, sometimes with a kahakō), so the phrases have
+ * the same alphabet, word lengths and diacritics as real sayings. The same
+ * seed always gives the same corpus.
+ *
+ * @author Binh Tran and Ellie Ishii
+ *
+ */
+class SyntheticSayings {
+    private static final String[] CONSONANTS = { "", "h", "k", "l", "m", "n", "p", "w", "ʻ" };
+    private static final String[] VOWELS = { "a", "e", "i", "o", "u", "ā", "ē", "ī", "ō", "ū" };
+    private static final String[] ENGLISH = { "the", "water", "land", "sea", "sky", "chief", "people", "love",
+            "food", "rain", "wind", "child", "path", "wisdom", "work", "together", "light", "stone", "fish", "heart" };
+
+    // words that appear in a large share of the sayings, like "ka" and "wai" in the real corpus
+    static final String[] COMMON_WORDS = { "ka", "ke", "i", "wai", "aloha", "ʻāina" };
+
+    private final Random random;
+
+    // constructor for a generator with a fixed seed
+    SyntheticSayings(long seed) {
+        this.random = new Random(seed);
+    }
+
+    // generate count sayings with distinct Hawaiian words
+    List<Saying> generate(int count) {
+        List<Saying> sayings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sayings.add(next(i));
+        }
+        return sayings;
+    }
+
+    // generate one saying; the serial number keeps the Hawaiian words distinct
+    Saying next(int serial) {
+        StringBuilder hawaiian = new StringBuilder();
+        int words = 3 + random.nextInt(6);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                hawaiian.append(' ');
+            }
+            hawaiian.append(random.nextInt(4) == 0 ? COMMON_WORDS[random.nextInt(COMMON_WORDS.length)] : word());
+        }
+        hawaiian.append(' ').append(Integer.toString(serial, 36)).append('.');
+        // capitalize the first letter like a sentence
+        hawaiian.setCharAt(0, Character.toUpperCase(hawaiian.charAt(0)));
+
+        StringBuilder english = new StringBuilder();
+        int englishWords = 4 + random.nextInt(8);
+        for (int w = 0; w < englishWords; w++) {
+            english.append(w > 0 ? " " : "").append(ENGLISH[random.nextInt(ENGLISH.length)]);
+        }
+        return new Saying(hawaiian.toString(), english.append('.').toString(),
+                "Generated explanation number " + serial + " for benchmarking.");
+    }
+
+    // build a word of one to three syllables
+    private String word() {
+        StringBuilder word = new StringBuilder();
+        int syllables = 1 + random.nextInt(3);
+        for (int s = 0; s < syllables; s++) {
+            word.append(CONSONANTS[random.nextInt(CONSONANTS.length)]);
+            // one vowel in five carries a kahakō
+            word.append(VOWELS[random.nextInt(5) == 0 ? 5 + random.nextInt(5) : random.nextInt(5)]);
+        }
+        return word.toString();
+    }
+}